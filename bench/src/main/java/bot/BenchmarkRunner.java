@@ -0,0 +1,36 @@
+package bot;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * BenchmarkRunner class
+ *
+ * Runs the benchmarks with the gc profiler, so every result comes with its allocation per operation, and writes them to a json file (jmh-result.json unless -rff is
+ * given) that can be kept and compared between releases. Takes the usual JMH command line options.
+ *
+ * Usage: java -jar target/benchmarks.jar [JMH options] [regexp of benchmarks]
+ *
+ * @author stilkin
+ */
+public class BenchmarkRunner {
+    private static final String RESULT_FILE = "jmh-result.json";
+
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+	final CommandLineOptions commandLine = new CommandLineOptions(args);
+	final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+	if (!commandLine.getResult().hasValue()) {
+	    options.resultFormat(ResultFormatType.JSON).result(RESULT_FILE);
+	}
+	if (commandLine.getIncludes().isEmpty()) {
+	    options.include("bot\\..*Benchmark");
+	}
+	new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package bot;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BotStarterBenchmark class
+ *
+ * makeTurn end to end (rule based and with the alpha-beta search) and the building blocks of the rule based bot, over all positions of the corpus.
+ *
+ * @author stilkin
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BotStarterBenchmark {
+    /** ms in the time bank for the search benchmark, gives a budget of about 20 ms per move */
+    private static final int SEARCH_TIME_LEFT = 100;
+
+    private PositionCorpus mCorpus;
+    private Field[] mFields;
+    private BotStarter[] mBots; // one rule based bot per position, prepared for it
+    private TTTField[] mActiveBoards; // the first board the player to move may play on
+    private BotStarter mHeuristicBot;
+    private BotStarter mSearchBot;
+    private int mIndex = 0;
+    private final int[] mCells = new int[9];
+
+    @Setup(Level.Trial)
+    public void setup() {
+	Log.setLevel(Log.OFF);
+	mCorpus = PositionCorpus.load();
+	mFields = mCorpus.createFields();
+	mBots = new BotStarter[mFields.length];
+	mActiveBoards = new TTTField[mFields.length];
+
+	final BotConfig heuristic = new BotConfig();
+	heuristic.setEngine(BotConfig.ENGINE_HEURISTIC);
+	heuristic.set("endgame", "0"); // the rule based methods do not use them, and one solver table per position does not fit the heap
+	heuristic.set("pns", "0");
+	for (int i = 0; i < mFields.length; i++) {
+	    mBots[i] = new BotStarter(heuristic);
+	    mBots[i].setBotId(mCorpus.getBotId(i));
+	    mBots[i].prepare(mFields[i]);
+	    final List<Move> active = mFields[i].getActiveMicroBoards();
+	    mActiveBoards[i] = new TTTField();
+	    mActiveBoards[i].setBoard(mFields[i].getMicroBoard(active.get(0).mX, active.get(0).mY));
+	}
+	mHeuristicBot = new BotStarter(heuristic);
+	mSearchBot = new BotStarter(new BotConfig());
+    }
+
+    private int next() {
+	mIndex = (mIndex + 1 == mFields.length) ? 0 : mIndex + 1;
+	mHeuristicBot.setBotId(mCorpus.getBotId(mIndex));
+	mSearchBot.setBotId(mCorpus.getBotId(mIndex));
+	return mIndex;
+    }
+
+    @Benchmark
+    public Move makeTurnHeuristic() {
+	return mHeuristicBot.makeTurn(mFields[next()]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Move makeTurnSearch() {
+	return mSearchBot.makeTurn(mFields[next()], SEARCH_TIME_LEFT);
+    }
+
+    @Benchmark
+    public List<Move> getOrderedMoveList() {
+	final int i = next();
+	return mBots[i].getOrderedMoveList(mActiveBoards[i], mCorpus.getBotId(i));
+    }
+
+    @Benchmark
+    public int getOrderedCells() {
+	final int i = next();
+	return mBots[i].getOrderedCells(mActiveBoards[i], mCorpus.getBotId(i), mCells);
+    }
+
+    @Benchmark
+    public Move getSafeMove() {
+	final int i = next();
+	final int id = mCorpus.getBotId(i);
+	return mBots[i].getSafeMove(mActiveBoards[i], id, 3 - id);
+    }
+}
@@ -0,0 +1,74 @@
+package bot;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CorpusGenerator class
+ *
+ * Writes a new positions.txt: games where most moves are the best move of a one ply search with the HeuristicEvaluator and the others are random, so the corpus
+ * holds openings, middle games and endings with both forced and free boards. The seed is fixed, so the same corpus comes out every time.
+ *
+ * Usage: java -cp target/benchmarks.jar bot.CorpusGenerator [file] [games]
+ *
+ * @author stilkin
+ */
+public class CorpusGenerator {
+    private static final long SEED = 0x5EEDC0DEL;
+    private static final int RANDOM_MOVES = 3; // out of 10
+    private static final int SAMPLE_INTERVAL = 4; // plies between two recorded positions
+
+    public static void main(final String[] args) throws IOException {
+	final String file = (args.length > 0) ? args[0] : "src/main/resources/positions.txt";
+	final int games = (args.length > 1) ? Integer.parseInt(args[1]) : 40;
+
+	final FastRandom random = new FastRandom(SEED);
+	final Evaluator evaluator = new HeuristicEvaluator();
+	final Position position = new Position();
+	final int[] moves = new int[Position.NR_CELLS];
+	int count = 0;
+
+	final PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.US_ASCII));
+	try {
+	    out.println("# <id of the player to move> <field> <macroboard>, written by bot.CorpusGenerator");
+	    for (int game = 0; game < games; game++) {
+		position.clear();
+		int ply = 0;
+		while (!position.isGameOver()) {
+		    if (ply % SAMPLE_INTERVAL == game % SAMPLE_INTERVAL) {
+			out.println(position.getSide() + " " + position.toFieldString() + " " + position.toMacroboardString());
+			count++;
+		    }
+		    final int nrMoves = position.generateMoves(moves);
+		    if (random.nextInt(10) < RANDOM_MOVES) {
+			position.makeMove(moves[random.nextInt(nrMoves)]);
+		    } else {
+			position.makeMove(bestMove(position, evaluator, moves, nrMoves));
+		    }
+		    ply++;
+		}
+	    }
+	} finally {
+	    out.close();
+	}
+	System.out.println("Wrote " + count + " positions to " + file);
+    }
+
+    private static int bestMove(final Position position, final Evaluator evaluator, final int[] moves, final int nrMoves) {
+	int best = moves[0];
+	int bestScore = Integer.MIN_VALUE;
+	for (int i = 0; i < nrMoves; i++) {
+	    position.makeMove(moves[i]);
+	    final int score = (position.getWinner() == 3 - position.getSide()) ? Integer.MAX_VALUE : -evaluator.evaluate(position);
+	    position.unmakeMove();
+	    if (score > bestScore) {
+		bestScore = score;
+		best = moves[i];
+	    }
+	}
+	return best;
+    }
+}
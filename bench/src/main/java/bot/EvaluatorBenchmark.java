@@ -0,0 +1,62 @@
+package bot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * EvaluatorBenchmark class
+ *
+ * One leaf evaluation with the hand written and the n-tuple evaluator (all weights 0, the lookups cost the same whatever their values).
+ *
+ * @author stilkin
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+    private Position[] mPositions;
+    private final Evaluator mHeuristic = new HeuristicEvaluator();
+    private final Evaluator mNTuple = new NTupleEvaluator();
+    private int mIndex = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+	Log.setLevel(Log.OFF);
+	final PositionCorpus corpus = PositionCorpus.load();
+	final Field[] fields = corpus.createFields();
+	mPositions = new Position[fields.length];
+	for (int i = 0; i < fields.length; i++) {
+	    mPositions[i] = new Position();
+	    mPositions[i].setFromField(fields[i], corpus.getBotId(i));
+	}
+    }
+
+    private int next() {
+	mIndex = (mIndex + 1 == mPositions.length) ? 0 : mIndex + 1;
+	return mIndex;
+    }
+
+    @Benchmark
+    public int heuristic() {
+	return mHeuristic.evaluate(mPositions[next()]);
+    }
+
+    @Benchmark
+    public int nTuple() {
+	return mNTuple.evaluate(mPositions[next()]);
+    }
+}
@@ -0,0 +1,89 @@
+package bot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FieldBenchmark class
+ *
+ * Parsing the engine input and the per turn queries on the Field.
+ *
+ * @author stilkin
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldBenchmark {
+    private String[] mFieldStrings;
+    private String[] mMacroStrings;
+    private byte[][] mFieldBytes;
+    private byte[][] mMacroBytes;
+    private Field[] mFields;
+    private final Field mTarget = new Field();
+    private int mIndex = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+	Log.setLevel(Log.OFF);
+	final PositionCorpus corpus = PositionCorpus.load();
+	final int size = corpus.size();
+	mFieldStrings = new String[size];
+	mMacroStrings = new String[size];
+	mFieldBytes = new byte[size][];
+	mMacroBytes = new byte[size][];
+	for (int i = 0; i < size; i++) {
+	    mFieldStrings[i] = corpus.getField(i);
+	    mMacroStrings[i] = corpus.getMacroboard(i);
+	    mFieldBytes[i] = mFieldStrings[i].getBytes(StandardCharsets.US_ASCII);
+	    mMacroBytes[i] = mMacroStrings[i].getBytes(StandardCharsets.US_ASCII);
+	}
+	mFields = corpus.createFields();
+    }
+
+    private int next() {
+	mIndex = (mIndex + 1 == mFields.length) ? 0 : mIndex + 1;
+	return mIndex;
+    }
+
+    @Benchmark
+    public Field parseFromString() {
+	final int i = next();
+	mTarget.parseFromString(mFieldStrings[i]);
+	mTarget.parseMacroboardFromString(mMacroStrings[i]);
+	return mTarget;
+    }
+
+    @Benchmark
+    public Field parseFromBytes() {
+	final int i = next();
+	mTarget.parseFromBytes(mFieldBytes[i], 0, mFieldBytes[i].length);
+	mTarget.parseMacroboardFromBytes(mMacroBytes[i], 0, mMacroBytes[i].length);
+	return mTarget;
+    }
+
+    @Benchmark
+    public int[][] getValidMacroBoard() {
+	return mFields[next()].getValidMacroBoard();
+    }
+
+    @Benchmark
+    public List<Move> getActiveMicroBoards() {
+	return mFields[next()].getActiveMicroBoards();
+    }
+}
@@ -0,0 +1,88 @@
+package bot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PositionCorpus class
+ *
+ * The recorded positions the benchmarks run on, read from the positions.txt resource. Every line holds the id of the player to move, the field and the macroboard,
+ * exactly as the engine sends them. Lines starting with '#' are comments.
+ *
+ * @author stilkin
+ */
+public class PositionCorpus {
+    public static final String RESOURCE = "/positions.txt";
+
+    private final List<String> mFields = new ArrayList<String>();
+    private final List<String> mMacroboards = new ArrayList<String>();
+    private final List<Integer> mBotIds = new ArrayList<Integer>();
+
+    public static PositionCorpus load() {
+	final InputStream in = PositionCorpus.class.getResourceAsStream(RESOURCE);
+	if (in == null) {
+	    throw new IllegalStateException("Missing resource " + RESOURCE);
+	}
+	final PositionCorpus corpus = new PositionCorpus();
+	try {
+	    final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+	    try {
+		String line;
+		while ((line = reader.readLine()) != null) {
+		    line = line.trim();
+		    if (line.length() == 0 || line.startsWith("#")) {
+			continue;
+		    }
+		    final String[] parts = line.split(" ");
+		    corpus.mBotIds.add(Integer.parseInt(parts[0]));
+		    corpus.mFields.add(parts[1]);
+		    corpus.mMacroboards.add(parts[2]);
+		}
+	    } finally {
+		reader.close();
+	    }
+	} catch (final IOException e) {
+	    throw new IllegalStateException("Can not read " + RESOURCE, e);
+	}
+	return corpus;
+    }
+
+    public int size() {
+	return mFields.size();
+    }
+
+    public int getBotId(final int index) {
+	return mBotIds.get(index);
+    }
+
+    public String getField(final int index) {
+	return mFields.get(index);
+    }
+
+    public String getMacroboard(final int index) {
+	return mMacroboards.get(index);
+    }
+
+    /**
+     * A new Field holding position index
+     */
+    public Field createField(final int index) {
+	final Field field = new Field();
+	field.parseFromString(getField(index));
+	field.parseMacroboardFromString(getMacroboard(index));
+	return field;
+    }
+
+    public Field[] createFields() {
+	final Field[] fields = new Field[size()];
+	for (int i = 0; i < fields.length; i++) {
+	    fields[i] = createField(i);
+	}
+	return fields;
+    }
+}
@@ -0,0 +1,85 @@
+package bot;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TTTFieldBenchmark class
+ *
+ * The line checks on a single board, over every microboard of the corpus, next to the MicroTable lookups that answer the same questions.
+ *
+ * @author stilkin
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TTTFieldBenchmark {
+    private TTTField[] mBoards;
+    private int[] mCodes;
+    private int mIndex = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+	final Field[] fields = PositionCorpus.load().createFields();
+	mBoards = new TTTField[fields.length * Position.NR_BOARDS];
+	mCodes = new int[mBoards.length];
+	for (int i = 0; i < fields.length; i++) {
+	    for (int b = 0; b < Position.NR_BOARDS; b++) {
+		final TTTField board = new TTTField();
+		board.setBoard(fields[i].getMicroBoard(b % 3, b / 3));
+		mBoards[i * Position.NR_BOARDS + b] = board;
+		mCodes[i * Position.NR_BOARDS + b] = board.getCode();
+	    }
+	}
+    }
+
+    private int next() {
+	mIndex = (mIndex + 1 == mBoards.length) ? 0 : mIndex + 1;
+	return mIndex;
+    }
+
+    @Benchmark
+    public boolean hasThreeInARow() {
+	return mBoards[next()].hasThreeInARow(1);
+    }
+
+    @Benchmark
+    public boolean hasTwoInLine() {
+	return mBoards[next()].hasSomeInLine(1, 2);
+    }
+
+    @Benchmark
+    public boolean isFull() {
+	return mBoards[next()].isFull();
+    }
+
+    @Benchmark
+    public List<Move> getAvailableMoves() {
+	return mBoards[next()].getAvailableMoves();
+    }
+
+    @Benchmark
+    public boolean tableHasTwoInLine() {
+	return MicroTable.hasTwoInLine(mCodes[next()], 1);
+    }
+
+    @Benchmark
+    public int tableWinSquares() {
+	return MicroTable.getWinSquares(mCodes[next()], 1);
+    }
+}
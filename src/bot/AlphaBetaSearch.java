@@ -0,0 +1,297 @@
+package bot;
+
+/**
+ * AlphaBetaSearch class
+ *
+ * Negamax alpha-beta search over the whole game with iterative deepening. Every iteration that finishes before the deadline replaces the best move, an iteration that
+ * runs out of time is thrown away. Results are kept in a {@link TranspositionTable}, which may be shared with other searches, and moves are ordered by a
+ * {@link MoveOrderer}.
+ *
+ * @author stilkin
+ */
+public class AlphaBetaSearch implements SearchEngine {
+    public static final int WIN = 1000000;
+    public static final int MAX_PLY = Position.NR_CELLS + 1;
+    private static final int INFINITY = WIN + 1;
+    private static final int TIME_CHECK_INTERVAL = 1023; // nodes between two looks at the clock
+
+    private final Evaluator mEvaluator;
+    private final TranspositionTable mTable;
+    private int mAge; // of the running search in the table
+    private final Position mPosition = new Position();
+    private final int[][] mMoves = new int[MAX_PLY][Position.NR_CELLS];
+    private final int[][] mMoveScores = new int[MAX_PLY][Position.NR_CELLS];
+    private final MoveOrderer mOrderer = new MoveOrderer();
+    private final Position mPvPosition = new Position();
+    private final int[] mPvMoves = new int[Position.NR_CELLS];
+
+    private long mDeadline;
+    private volatile boolean mStopped;
+    private boolean mAborted;
+    private long mNodes;
+    private long mCutoffs;
+    private long mFirstMoveCutoffs;
+    private int mScore;
+    private int mDepth;
+    private int mBestMove;
+
+    public AlphaBetaSearch(final Evaluator evaluator, final TranspositionTable table) {
+	mEvaluator = evaluator;
+	mTable = table;
+    }
+
+    @Override
+    public int findMove(final Position position, final long deadline) {
+	mPosition.copyFrom(position);
+	mDeadline = deadline;
+	mStopped = false;
+	mAborted = false;
+	mNodes = 0;
+	mCutoffs = 0;
+	mFirstMoveCutoffs = 0;
+	mScore = 0;
+	mDepth = 0;
+	mBestMove = -1;
+	mAge = mTable.newSearch();
+	mOrderer.newSearch();
+	try {
+	    return searchRoot();
+	} finally {
+	    mTable.endSearch(mAge);
+	}
+    }
+
+    private int searchRoot() {
+	final int[] rootMoves = mMoves[0];
+	final int nrMoves = mPosition.generateMoves(rootMoves);
+	if (nrMoves == 0) {
+	    return -1;
+	}
+	final long entry = mTable.probe(mPosition.getHash());
+	mOrderer.orderMoves(mPosition, rootMoves, mMoveScores[0], nrMoves, (entry == TranspositionTable.MISS) ? -1 : TranspositionTable.getMove(entry), 0);
+	int bestMove = rootMoves[0];
+	mBestMove = bestMove;
+	if (nrMoves == 1) {
+	    return bestMove;
+	}
+
+	final int maxDepth = mPosition.getOpenCellCount();
+	for (int depth = 1; depth <= maxDepth; depth++) {
+	    int alpha = -INFINITY;
+	    int iterationBest = -1;
+	    for (int i = 0; i < nrMoves; i++) {
+		mPosition.makeMove(rootMoves[i]);
+		final int score = -negamax(depth - 1, -INFINITY, -alpha, 1);
+		mPosition.unmakeMove();
+		if (mAborted) {
+		    break;
+		}
+		if (score > alpha) {
+		    alpha = score;
+		    iterationBest = i;
+		}
+	    }
+	    if (mAborted) {
+		break;
+	    }
+
+	    // completed iteration: search its best move first next time
+	    bestMove = rootMoves[iterationBest];
+	    mBestMove = bestMove;
+	    System.arraycopy(rootMoves, 0, rootMoves, 1, iterationBest);
+	    rootMoves[0] = bestMove;
+	    mScore = alpha;
+	    mDepth = depth;
+	    mTable.store(mPosition.getHash(), toTable(alpha, 0), bestMove, depth, TranspositionTable.EXACT, mAge);
+	    if (alpha >= WIN - MAX_PLY || alpha <= -WIN + MAX_PLY) {
+		break; // the game is decided, a deeper search can not change that
+	    }
+	}
+	Log.debug("Alpha-beta: %d cutoffs, %.1f%% on the first move", mCutoffs, 100 * getFirstMoveCutoffRate());
+	return bestMove;
+    }
+
+    private int negamax(final int depth, int alpha, final int beta, final int ply) {
+	mNodes++;
+	if ((mNodes & TIME_CHECK_INTERVAL) == 0 && (mStopped || System.nanoTime() >= mDeadline)) {
+	    mAborted = true;
+	}
+	if (mAborted) {
+	    return 0;
+	}
+
+	final int winner = mPosition.getWinner();
+	if (winner != Position.NONE) {
+	    // the side that just moved can only have won or drawn
+	    return (winner == Position.DRAW) ? 0 : -(WIN - ply);
+	}
+	if (depth <= 0) {
+	    return mEvaluator.evaluate(mPosition);
+	}
+
+	final long hash = mPosition.getHash();
+	final long entry = mTable.probe(hash);
+	int tableMove = -1;
+	if (entry != TranspositionTable.MISS) {
+	    tableMove = TranspositionTable.getMove(entry);
+	    if (TranspositionTable.getDepth(entry) >= depth) {
+		final int score = fromTable(TranspositionTable.getScore(entry), ply);
+		final int bound = TranspositionTable.getBound(entry);
+		if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+			|| (bound == TranspositionTable.UPPER && score <= alpha)) {
+		    return score;
+		}
+	    }
+	}
+
+	final int[] moves = mMoves[ply];
+	final int nrMoves = mPosition.generateMoves(moves);
+	mOrderer.orderMoves(mPosition, moves, mMoveScores[ply], nrMoves, tableMove, ply);
+
+	final int alphaStart = alpha;
+	int best = -INFINITY;
+	int bestMove = -1;
+	for (int i = 0; i < nrMoves; i++) {
+	    mPosition.makeMove(moves[i]);
+	    final int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+	    mPosition.unmakeMove();
+	    if (mAborted) {
+		return 0;
+	    }
+	    if (score > best) {
+		best = score;
+		bestMove = moves[i];
+		if (score > alpha) {
+		    alpha = score;
+		    if (alpha >= beta) {
+			mCutoffs++;
+			if (i == 0) {
+			    mFirstMoveCutoffs++;
+			}
+			mOrderer.addCutoff(mPosition, bestMove, depth, ply);
+			break;
+		    }
+		}
+	    }
+	}
+
+	final int bound = (best >= beta) ? TranspositionTable.LOWER : ((best > alphaStart) ? TranspositionTable.EXACT : TranspositionTable.UPPER);
+	mTable.store(hash, toTable(best, ply), bestMove, depth, bound, mAge);
+	return best;
+    }
+
+    /**
+     * Win scores count plies from the root, the table stores them counted from the node itself
+     */
+    private static int toTable(final int score, final int ply) {
+	if (score >= WIN - MAX_PLY) {
+	    return score + ply;
+	}
+	if (score <= -WIN + MAX_PLY) {
+	    return score - ply;
+	}
+	return score;
+    }
+
+    private static int fromTable(final int score, final int ply) {
+	if (score >= WIN - MAX_PLY) {
+	    return score - ply;
+	}
+	if (score <= -WIN + MAX_PLY) {
+	    return score + ply;
+	}
+	return score;
+    }
+
+    /**
+     * Insertion sort on descending score, the lists are short and mostly ordered
+     */
+    static void sortMoves(final int[] moves, final int[] scores, final int nrMoves) {
+	for (int i = 1; i < nrMoves; i++) {
+	    final int move = moves[i];
+	    final int score = scores[i];
+	    int j = i - 1;
+	    while (j >= 0 && scores[j] < score) {
+		moves[j + 1] = moves[j];
+		scores[j + 1] = scores[j];
+		j--;
+	    }
+	    moves[j + 1] = move;
+	    scores[j + 1] = score;
+	}
+    }
+
+    @Override
+    public void stop() {
+	mStopped = true;
+    }
+
+    @Override
+    public void close() {
+	// single threaded, nothing to release
+    }
+
+    @Override
+    public int getScore() {
+	return mScore;
+    }
+
+    @Override
+    public int getDepth() {
+	return mDepth;
+    }
+
+    @Override
+    public long getNodeCount() {
+	return mNodes;
+    }
+
+    /**
+     * The chosen move, then the moves of the transposition table for as long as they are legal, up to the depth of the last completed iteration
+     */
+    @Override
+    public int getPrincipalVariation(final int[] moves) {
+	if (mBestMove < 0 || moves.length == 0) {
+	    return 0;
+	}
+	final Position position = mPvPosition;
+	position.copyFrom(mPosition);
+	moves[0] = mBestMove;
+	position.makeMove(mBestMove);
+	int length = 1;
+	while (length < moves.length && length < mDepth && !position.isGameOver()) {
+	    final long entry = mTable.probe(position.getHash());
+	    if (entry == TranspositionTable.MISS || !isLegal(position, TranspositionTable.getMove(entry))) {
+		break;
+	    }
+	    moves[length] = TranspositionTable.getMove(entry);
+	    position.makeMove(moves[length]);
+	    length++;
+	}
+	return length;
+    }
+
+    private boolean isLegal(final Position position, final int move) {
+	final int nrMoves = position.generateMoves(mPvMoves);
+	for (int i = 0; i < nrMoves; i++) {
+	    if (mPvMoves[i] == move) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Returns the number of beta cutoffs of the last search
+     */
+    public long getCutoffCount() {
+	return mCutoffs;
+    }
+
+    /**
+     * Returns the share of the beta cutoffs of the last search that came from the first move tried, a measure of how good the move ordering is
+     */
+    public double getFirstMoveCutoffRate() {
+	return (mCutoffs == 0) ? 0 : (double) mFirstMoveCutoffs / mCutoffs;
+    }
+}
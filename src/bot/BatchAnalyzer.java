@@ -0,0 +1,287 @@
+package bot;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * BatchAnalyzer class
+ *
+ * Searches every position of a file (or stdin) for a fixed time and writes the best move, its score, the depth reached and the nodes, one line per position in the
+ * order of the input. A position is a line with the id of the player to move, the field and the macroboard as the engine sends them (the format of the benchmark
+ * corpus); without the id the player to move follows from the number of marks. Empty lines and lines starting with '#' are skipped, a line that is not a position
+ * gives an error line.
+ *
+ * One thread reads, a pool of threads searches (each with a bot of its own, all sharing one transposition table) and the main thread writes. At most `window`
+ * positions are between being read and being written, so memory stays the same however large the input is: a slow position holds up the output, and the reader
+ * once the window is full.
+ *
+ * Usage: java -cp bin bot.BatchAnalyzer [--in=FILE] [--out=FILE] [--ms=100] [--threads=N|auto] [--window=N] [bot options]
+ *
+ * @author stilkin
+ */
+public class BatchAnalyzer {
+    private static final int WINDOW_PER_THREAD = 64;
+
+    // options
+    private String mIn = null; // stdin
+    private String mOut = null; // stdout
+    private int mMs = 100;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private int mWindow = 0; // 0: WINDOW_PER_THREAD per thread
+    private final BotConfig mConfig = new BotConfig();
+
+    private BlockingQueue<Task> mQueue;
+    private Semaphore mFreeSlots;
+    private String[] mResults; // the result of position n at n % window, null until it is searched
+    private long mTotal = -1; // number of positions, -1 while reading; guarded by mResults
+    private volatile IOException mReadError;
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+	final BatchAnalyzer analyzer = new BatchAnalyzer();
+	analyzer.mConfig.set("log", "warn");
+	for (final String arg : args) {
+	    final int eq = arg.indexOf('=');
+	    if (!arg.startsWith("--") || eq < 0) {
+		throw new IllegalArgumentException("Expected --name=value: " + arg);
+	    }
+	    analyzer.set(arg.substring(2, eq), arg.substring(eq + 1));
+	}
+	Log.setLevel(analyzer.mConfig.getLogLevel());
+	analyzer.run();
+    }
+
+    /**
+     * Set an option of the analysis, anything else is an option of the bots
+     */
+    public void set(final String name, final String value) {
+	if (name.equals("in")) {
+	    mIn = value;
+	} else if (name.equals("out")) {
+	    mOut = value;
+	} else if (name.equals("ms")) {
+	    mMs = Integer.parseInt(value);
+	} else if (name.equals("threads")) {
+	    mThreads = value.equals("auto") ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(value);
+	    if (mThreads < 1) {
+		throw new IllegalArgumentException("Need at least one thread: " + value);
+	    }
+	} else if (name.equals("window")) {
+	    mWindow = Integer.parseInt(value);
+	} else {
+	    mConfig.set(name, value);
+	}
+    }
+
+    public void run() throws IOException, InterruptedException {
+	if (mConfig.getEngine().equals(BotConfig.ENGINE_HEURISTIC)) {
+	    throw new IllegalArgumentException("The analysis needs a search engine");
+	}
+	final int window = (mWindow > 0) ? mWindow : WINDOW_PER_THREAD * mThreads;
+	mQueue = new ArrayBlockingQueue<Task>(window + mThreads);
+	mFreeSlots = new Semaphore(window);
+	mResults = new String[window];
+
+	final InputStream in = (mIn != null) ? new FileInputStream(mIn) : System.in;
+	final OutputStream out = (mOut != null) ? new FileOutputStream(mOut) : System.out;
+	final PrintStream writer = new PrintStream(new BufferedOutputStream(out, 1 << 16), false, "US-ASCII");
+	final long start = System.nanoTime();
+
+	// the workers only need an engine each, on the table and weights of one bot
+	final BotStarter shared = new BotStarter(mConfig, false);
+	for (int t = 0; t < mThreads; t++) {
+	    startThread(new Worker(shared.newEngine()), "analyzer-" + (t + 1));
+	}
+	startThread(new Runnable() {
+	    @Override
+	    public void run() {
+		read(in);
+	    }
+	}, "reader");
+
+	final long count = write(writer);
+	writer.flush();
+	if (mOut != null) {
+	    writer.close();
+	}
+	if (mReadError != null) {
+	    throw mReadError;
+	}
+	final double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+	Log.warn("Analysed %d positions in %.1f s, %.1f per second", count, seconds, count / seconds);
+    }
+
+    private static void startThread(final Runnable runnable, final String name) {
+	final Thread thread = new Thread(runnable, name);
+	thread.setDaemon(true);
+	thread.start();
+    }
+
+    /**
+     * Hand the positions to the workers, each once a slot of the window is free
+     */
+    private void read(final InputStream in) {
+	long count = 0;
+	try {
+	    final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+	    try {
+		String line;
+		while ((line = reader.readLine()) != null) {
+		    line = line.trim();
+		    if (line.length() == 0 || line.startsWith("#")) {
+			continue;
+		    }
+		    mFreeSlots.acquire();
+		    mQueue.put(new Task(count++, line));
+		}
+	    } finally {
+		reader.close();
+	    }
+	} catch (final IOException e) {
+	    mReadError = e;
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	try {
+	    for (int t = 0; t < mThreads; t++) {
+		mQueue.put(new Task(-1, null));
+	    }
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	synchronized (mResults) {
+	    mTotal = count;
+	    mResults.notifyAll();
+	}
+    }
+
+    private void setResult(final long index, final String result) {
+	synchronized (mResults) {
+	    mResults[(int) (index % mResults.length)] = result;
+	    mResults.notifyAll();
+	}
+    }
+
+    /**
+     * Write the results in the order of the input until all positions are written
+     *
+     * @return the number of positions
+     */
+    private long write(final PrintStream out) throws InterruptedException {
+	long next = 0;
+	while (true) {
+	    final int slot = (int) (next % mResults.length);
+	    final String result;
+	    synchronized (mResults) {
+		while (mResults[slot] == null && (mTotal < 0 || next < mTotal)) {
+		    mResults.wait();
+		}
+		if (mResults[slot] == null) {
+		    return next;
+		}
+		result = mResults[slot];
+		mResults[slot] = null;
+	    }
+	    out.println(result);
+	    next++;
+	    mFreeSlots.release();
+	}
+    }
+
+    /**
+     * A line of the input and its place in it, a null line tells a worker to stop
+     */
+    private static class Task {
+	final long mIndex;
+	final String mLine;
+
+	Task(final long index, final String line) {
+	    mIndex = index;
+	    mLine = line;
+	}
+    }
+
+    /**
+     * Searches positions on one thread
+     */
+    private class Worker implements Runnable {
+	private final SearchEngine mEngine;
+	private final Field mField = new Field();
+	private final Position mPosition = new Position();
+
+	Worker(final SearchEngine engine) {
+	    mEngine = engine;
+	}
+
+	@Override
+	public void run() {
+	    try {
+		while (true) {
+		    final Task task = mQueue.take();
+		    if (task.mLine == null) {
+			return;
+		    }
+		    String result;
+		    try {
+			result = analyse(task.mLine);
+		    } catch (final RuntimeException e) {
+			result = "error " + e + ": " + task.mLine; // every position needs a result, or the writer waits for it forever
+		    }
+		    setResult(task.mIndex, result);
+		}
+	    } catch (final InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    } finally {
+		mEngine.close();
+	    }
+	}
+
+	/**
+	 * Returns "x y score depth nodes" of the best move, "-1 -1 0 0 0" when the game is over, or "error" and what is wrong with the line
+	 */
+	private String analyse(final String line) {
+	    final String[] parts = line.split("\\s+");
+	    if (parts.length != 2 && parts.length != 3) {
+		return "error expected [player] field macroboard: " + line;
+	    }
+	    final int side;
+	    try {
+		mField.parseFromString(parts[parts.length - 2]);
+		mField.parseMacroboardFromString(parts[parts.length - 1]);
+		side = (parts.length == 3) ? Integer.parseInt(parts[0]) : sideToMove(mField);
+	    } catch (final RuntimeException e) {
+		return "error " + e + ": " + line;
+	    }
+	    if (side != 1 && side != 2) {
+		return "error no player " + side + ": " + line;
+	    }
+	    mPosition.setFromField(mField, side);
+	    final int move = mEngine.findMove(mPosition, System.nanoTime() + mMs * 1000000L);
+	    if (move < 0) {
+		return "-1 -1 0 0 0";
+	    }
+	    return Position.getX(move) + " " + Position.getY(move) + " " + mEngine.getScore() + " " + mEngine.getDepth() + " " + mEngine.getNodeCount();
+	}
+    }
+
+    /**
+     * Player 1 moves first, so it is to move when the number of marks is even
+     */
+    private static int sideToMove(final Field field) {
+	int marks = 0;
+	for (int b = 0; b < Position.NR_BOARDS; b++) {
+	    marks += Integer.bitCount(field.getMicroMask(b % 3, b / 3, 1) | field.getMicroMask(b % 3, b / 3, 2));
+	}
+	return ((marks & 1) == 0) ? 1 : 2;
+    }
+}
@@ -0,0 +1,95 @@
+package bot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * BookGenerator class
+ *
+ * Writes an {@link OpeningBook}: every position of the first plies (up to symmetry) is searched with the alpha-beta search for a fixed time, and its best move is
+ * stored. The book covers the positions with less than depth marks.
+ *
+ * Usage: java -cp bin bot.BookGenerator [file] [depth] [ms per position]
+ *
+ * @author stilkin
+ */
+public class BookGenerator {
+    private static final int DEFAULT_DEPTH = 4;
+    private static final int DEFAULT_TIME = 100;
+
+    public static void main(final String[] args) throws IOException {
+	final String file = (args.length > 0) ? args[0] : "book.bin";
+	final int depth = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+	final int time = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_TIME;
+	Log.setLevel(Log.WARN);
+
+	final long[] entries = generate(depth, time);
+	write(file, entries, depth);
+	System.out.println("Wrote " + entries.length + " positions to " + file);
+    }
+
+    /**
+     * Search all positions with less than depth marks, returns the sorted book entries
+     */
+    static long[] generate(final int depth, final int timePerPosition) {
+	final SearchEngine search = new AlphaBetaSearch(new HeuristicEvaluator(), new TranspositionTable(TranspositionTable.DEFAULT_MB));
+	final Set<Long> seen = new HashSet<Long>();
+	final List<Long> entries = new ArrayList<Long>();
+	final int[] moves = new int[Position.NR_CELLS];
+
+	List<Position> level = new ArrayList<Position>();
+	level.add(new Position());
+	for (int ply = 0; ply < depth && !level.isEmpty(); ply++) {
+	    final List<Position> next = new ArrayList<Position>();
+	    for (final Position position : level) {
+		final int s = OpeningBook.getCanonicalSymmetry(position);
+		final int move = search.findMove(position, System.nanoTime() + timePerPosition * 1000000L);
+		if (move >= 0) {
+		    entries.add(OpeningBook.toEntry(OpeningBook.getHash(position, s), OpeningBook.SYM_MOVE[s][move]));
+		}
+		if (ply + 1 == depth) {
+		    continue;
+		}
+		final int nrMoves = position.generateMoves(moves);
+		for (int i = 0; i < nrMoves; i++) {
+		    final Position child = new Position();
+		    child.copyFrom(position);
+		    child.makeMove(moves[i]);
+		    if (!child.isGameOver() && seen.add(OpeningBook.getHash(child, OpeningBook.getCanonicalSymmetry(child)))) {
+			next.add(child);
+		    }
+		}
+	    }
+	    System.out.println("Ply " + ply + ": " + level.size() + " positions");
+	    level = next;
+	}
+
+	final long[] sorted = new long[entries.size()];
+	for (int i = 0; i < sorted.length; i++) {
+	    sorted[i] = entries.get(i);
+	}
+	Arrays.sort(sorted);
+	return sorted;
+    }
+
+    static void write(final String file, final long[] entries, final int depth) throws IOException {
+	final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+	try {
+	    out.writeLong(OpeningBook.MAGIC);
+	    out.writeInt(entries.length);
+	    out.writeInt(depth);
+	    for (final long entry : entries) {
+		out.writeLong(entry);
+	    }
+	} finally {
+	    out.close();
+	}
+    }
+}
@@ -0,0 +1,155 @@
+package bot;
+
+/**
+ * BotConfig class
+ *
+ * Options given on the command line, as --name=value.
+ *
+ * @author stilkin
+ */
+public class BotConfig {
+    public static final String ENGINE_HEURISTIC = "heuristic";
+    public static final String ENGINE_ALPHABETA = "alphabeta";
+    public static final String ENGINE_MCTS = "mcts";
+
+    private String mEngine = ENGINE_ALPHABETA;
+    private int mMctsNodes = MctsSearch.DEFAULT_NODES;
+    private int mThreads = 1;
+    private int mHashMb = TranspositionTable.DEFAULT_MB;
+    private boolean mPonder = false;
+    private int mLogLevel = Log.INFO;
+    private String mBook = null;
+    private String mWeights = null;
+    private String mStats = null;
+    private String mRecord = null;
+    private int mEndgameCells = 24;
+    private int mPnsNodes = ProofNumberSearch.DEFAULT_NODES;
+    private int mWarmupMs = 300;
+
+    public static BotConfig parse(final String[] args) {
+	final BotConfig config = new BotConfig();
+	for (final String arg : args) {
+	    final int eq = arg.indexOf('=');
+	    if (!arg.startsWith("--") || eq < 0) {
+		throw new IllegalArgumentException("Expected --name=value: " + arg);
+	    }
+	    config.set(arg.substring(2, eq), arg.substring(eq + 1));
+	}
+	return config;
+    }
+
+    public void set(final String name, final String value) {
+	if (name.equals("engine")) {
+	    if (!value.equals(ENGINE_HEURISTIC) && !value.equals(ENGINE_ALPHABETA) && !value.equals(ENGINE_MCTS)) {
+		throw new IllegalArgumentException("Unknown engine: " + value);
+	    }
+	    mEngine = value;
+	} else if (name.equals("mcts_nodes")) {
+	    mMctsNodes = Integer.parseInt(value);
+	} else if (name.equals("log")) {
+	    mLogLevel = Log.parseLevel(value);
+	} else if (name.equals("ponder")) {
+	    mPonder = Boolean.parseBoolean(value);
+	} else if (name.equals("hash")) {
+	    mHashMb = Integer.parseInt(value);
+	} else if (name.equals("pns")) {
+	    mPnsNodes = Integer.parseInt(value);
+	} else if (name.equals("endgame")) {
+	    mEndgameCells = Integer.parseInt(value);
+	} else if (name.equals("book")) {
+	    mBook = value;
+	} else if (name.equals("weights")) {
+	    mWeights = value;
+	} else if (name.equals("stats")) {
+	    mStats = value;
+	} else if (name.equals("record")) {
+	    mRecord = value;
+	} else if (name.equals("warmup")) {
+	    mWarmupMs = Integer.parseInt(value);
+	} else if (name.equals("threads")) {
+	    mThreads = value.equals("auto") ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(value);
+	    if (mThreads < 1) {
+		throw new IllegalArgumentException("Need at least one thread: " + value);
+	    }
+	} else {
+	    throw new IllegalArgumentException("Unknown option: " + name);
+	}
+    }
+
+    public String getEngine() {
+	return mEngine;
+    }
+
+    public void setEngine(final String engine) {
+	set("engine", engine);
+    }
+
+    public int getMctsNodes() {
+	return mMctsNodes;
+    }
+
+    public int getThreads() {
+	return mThreads;
+    }
+
+    public int getHashMb() {
+	return mHashMb;
+    }
+
+    /**
+     * Returns the opening book file, null for none
+     */
+    public String getBook() {
+	return mBook;
+    }
+
+    /**
+     * Returns the n-tuple weights file for the alpha-beta evaluation, null for the hand written one
+     */
+    public String getWeights() {
+	return mWeights;
+    }
+
+    /**
+     * Returns the file to append the statistics of every move to as JSON lines, null for none
+     */
+    public String getStats() {
+	return mStats;
+    }
+
+    /**
+     * Returns the file to append the record of every game to (see {@link GameRecord}), null for none
+     */
+    public String getRecord() {
+	return mRecord;
+    }
+
+    /**
+     * Returns the node budget of the proof-number search for forced wins, 0 for none
+     */
+    public int getPnsNodes() {
+	return mPnsNodes;
+    }
+
+    /**
+     * Returns the number of open cells from which on the endgame solver is used, 0 for never
+     */
+    public int getEndgameCells() {
+	return mEndgameCells;
+    }
+
+    /**
+     * Returns the ms that the bot may spend on warming up before its first move, 0 for none
+     */
+    public int getWarmupMs() {
+	return mWarmupMs;
+    }
+
+    public boolean isPonder() {
+	return mPonder;
+    }
+
+    public int getLogLevel() {
+	return mLogLevel;
+    }
+}
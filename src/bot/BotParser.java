@@ -17,57 +17,140 @@
 
 package bot;
 
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * BotParser class
  * 
  * Main class that will keep reading output from the engine. Will either update the bot state or get actions.
  * 
+ * All state of the game is in the parser and its bot, so one JVM can run many parsers at once, each on streams of its own (see {@link GameServer}).
+ * 
  * @author Jim van Eeden <jim@starapple.nl>
+ * @author stilkin
  */
 
 public class BotParser {
 
-    final Scanner scan;
+    final ProtocolReader reader;
+    final PrintStream out;
     final BotStarter bot;
+    private final BlockingQueue<BotStarter> searchers;
 
     private Field mField;
-    public static int mBotId = 0;
 
     public BotParser(BotStarter bot) {
-	this.scan = new Scanner(System.in);
+	this(bot, System.in, System.out, null);
+    }
+
+    /**
+     * @param searchers
+     *            shared by the parsers of all games: bots whose engines the bot (made without its own) borrows for a move, one at a time; null to move right away
+     *            with the engines of the bot
+     */
+    public BotParser(final BotStarter bot, final InputStream in, final PrintStream out, final BlockingQueue<BotStarter> searchers) {
+	this.reader = new ProtocolReader(in);
+	this.out = out;
 	this.bot = bot;
+	this.searchers = searchers;
     }
 
     public void run() {
 	mField = new Field();
-	while (scan.hasNextLine()) {
-	    String line = scan.nextLine();
-
-	    if (line.length() == 0) {
-		continue;
+	try {
+	    while (reader.nextLine()) {
+		if (reader.getTokenCount() == 0) {
+		    continue;
+		}
+		handleLine();
 	    }
+	} catch (final IOException e) {
+	    Log.error("Reading input failed: %s", e);
+	}
+	this.bot.finishGame();
+    }
 
-	    String[] parts = line.split(" ");
-	    if (parts[0].equals("settings")) {
-		if (parts[1].equals("your_botid")) {
-		    mBotId = Integer.parseInt(parts[2]);
+    private void handleLine() {
+	if (reader.isToken(0, "settings")) {
+	    this.bot.startWarmup(); /* the first move follows the settings */
+	    if (reader.isToken(1, "your_botid")) {
+		this.bot.setBotId(reader.getInt(2));
+	    } else if (reader.isToken(1, "timebank")) {
+		this.bot.getTimeManager().setTimebank(reader.getInt(2));
+	    } else if (reader.isToken(1, "time_per_move")) {
+		this.bot.getTimeManager().setTimePerMove(reader.getInt(2));
+	    }
+	} else if (reader.isToken(0, "update") && reader.isToken(1, "game")) { /* new game data */
+	    if (reader.getTokenCount() < 4) {
+		return;
+	    }
+	    if (reader.isToken(2, "field")) {
+		this.bot.stopPondering(); /* the opponent has moved */
+		final long start = System.nanoTime();
+		mField.parseFromBytes(reader.getLine(), reader.getTokenStart(3), reader.getTokenEnd(3));
+		this.bot.addParseTime(System.nanoTime() - start);
+	    } else if (reader.isToken(2, "macroboard")) {
+		final long start = System.nanoTime();
+		mField.parseMacroboardFromBytes(reader.getLine(), reader.getTokenStart(3), reader.getTokenEnd(3));
+		this.bot.addParseTime(System.nanoTime() - start);
+	    } else if (reader.isToken(2, "round")) {
+		mField.setRoundNr(reader.getInt(3));
+	    } else if (reader.isToken(2, "move")) {
+		mField.setMoveNr(reader.getInt(3));
+	    }
+	} else if (reader.isToken(0, "action")) {
+	    if (reader.isToken(1, "move")) { /* move requested */
+		final int timeLeft = (reader.getTokenCount() > 2) ? reader.getInt(2) : -1;
+		final Move move = makeTurn(timeLeft);
+		if (move != null) {
+		    out.println("place_move " + move.getX() + " " + move.getY());
+		} else {
+		    out.println("place_move 0 0");
 		}
-	    } else if (parts[0].equals("update") && parts[1].equals("game")) { /* new game data */
-		mField.parseGameData(parts[2], parts[3]);
-	    } else if (parts[0].equals("action")) {
-		if (parts[1].equals("move")) { /* move requested */
-		    final Move move = this.bot.makeTurn(mField);
-		    if (move != null) {
-			System.out.println("place_move " + move.getX() + " " + move.getY());
-		    } else {
-			System.out.println("place_move 0 0");
-		    }
+		this.bot.reportMove(); /* off the clock */
+		this.bot.startPondering();
+	    }
+	} else {
+	    out.println("unknown command");
+	}
+    }
+
+    /**
+     * Make the move, with searchers borrowed for it if there are any. The wait for them is taken off the time bank.
+     */
+    private Move makeTurn(final int timeLeft) {
+	if (searchers == null) {
+	    return this.bot.makeTurn(mField, timeLeft);
+	}
+	final long start = System.nanoTime();
+	final BotStarter borrowed = takeSearchers();
+	try {
+	    final int waited = (int) ((System.nanoTime() - start) / 1000000L);
+	    this.bot.useSearchers(borrowed);
+	    return this.bot.makeTurn(mField, (timeLeft < 0) ? timeLeft : Math.max(0, timeLeft - waited));
+	} finally {
+	    this.bot.useSearchers(null);
+	    searchers.add(borrowed);
+	}
+    }
+
+    private BotStarter takeSearchers() {
+	boolean interrupted = false;
+	try {
+	    while (true) {
+		try {
+		    return searchers.take();
+		} catch (final InterruptedException e) {
+		    interrupted = true;
 		}
-	    } else {
-		System.out.println("unknown command");
+	    }
+	} finally {
+	    if (interrupted) {
+		Thread.currentThread().interrupt();
 	    }
 	}
     }
-}
\ No newline at end of file
+}
@@ -17,6 +17,11 @@
 
 package bot;
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -35,15 +40,554 @@ public class BotStarter {
     private final TTTField macroField = new TTTField();
     private Field gameField;
     private int myId;
+    private int botId = 0;
     private int oppId;
     private final Random rand = new Random();
-    private final List<Move> cornerList = new ArrayList<Move>();
+    private static final int[] CORNERS = { 0, 6, 2, 8 }; // cells of (0,0), (0,2), (2,0) and (2,2)
+    private static final int[] LAST_ROW_FIRST = { 6, 7, 8, 3, 4, 5, 0, 1, 2 };
+    private static final int SIDES = TTTLookup.bit(1, 0) | TTTLookup.bit(0, 1) | TTTLookup.bit(2, 1) | TTTLookup.bit(1, 2);
+    private final int[] orderedCells = new int[9];
+    private final TimeManager timeManager = new TimeManager();
+    private static final String[] RESULT_NAMES = { "lost", "draw", "won" };
+    private final Position position = new Position();
+    private final BotConfig config;
+    private SearchEngine engine; // borrowed for each move by a bot without searchers of its own
+    private final TranspositionTable searchTable;
+    private final TranspositionTable endgameTable;
+    private final float[] weights;
+    private final OpeningBook book;
+    private EndgameSolver solver;
+    private ProofNumberSearch pns;
+    private final int endgameCells;
+    private final boolean ponder;
+    private final Position ponderPosition = new Position();
+    private Thread ponderThread;
+    private int lastMove = -1;
+    private final MoveStats stats = new MoveStats();
+    private final PrintStream statsOut;
+    private final GameRecordWriter recordWriter;
+    private final GameRecord record = new GameRecord();
+    private final Position recordPosition = new Position();
+    private boolean recording = false;
+    private long parseNanos = 0;
+    private static final int WARMUP_SLICE_MS = 20, WARMUP_PLY_STEP = 8, WARMUP_GAMES = 2;
+    private Thread warmupThread;
+    private volatile boolean warmupStopped = false;
+    private boolean warmupStarted = false;
 
     public BotStarter() {
-	cornerList.add(new Move(0, 0));
-	cornerList.add(new Move(0, 2));
-	cornerList.add(new Move(2, 0));
-	cornerList.add(new Move(2, 2));
+	this(new BotConfig());
+    }
+
+    public BotStarter(final BotConfig config) {
+	this(config, null, true);
+    }
+
+    /**
+     * A bot with the configuration of shared that uses its transposition tables, opening book, evaluation weights, stats and record files, so that many bots fit in
+     * one JVM.
+     * The bots may run on different threads.
+     */
+    public BotStarter(final BotStarter shared) {
+	this(shared.config, shared, true);
+    }
+
+    /**
+     * Like BotStarter(shared), but without searchers (engine, proof-number search and endgame solver) when ownSearchers is false: it must borrow them with
+     * useSearchers for every move. The {@link GameServer} keeps one set per worker instead of one per game.
+     */
+    BotStarter(final BotStarter shared, final boolean ownSearchers) {
+	this(shared.config, shared, ownSearchers);
+    }
+
+    /**
+     * A bot with tables, book, weights and files of its own for other bots to share, without searchers when ownSearchers is false
+     */
+    BotStarter(final BotConfig config, final boolean ownSearchers) {
+	this(config, null, ownSearchers);
+    }
+
+    private BotStarter(final BotConfig config, final BotStarter shared, final boolean ownSearchers) {
+	this.config = config;
+	endgameCells = config.getEndgameCells();
+	if (shared != null) {
+	    searchTable = shared.searchTable;
+	    endgameTable = shared.endgameTable;
+	    weights = shared.weights;
+	    book = shared.book;
+	    statsOut = shared.statsOut;
+	    recordWriter = shared.recordWriter;
+	} else {
+	    final boolean alphaBeta = config.getEngine().equals(BotConfig.ENGINE_ALPHABETA);
+	    searchTable = alphaBeta ? new TranspositionTable(config.getHashMb()) : null;
+	    endgameTable = (endgameCells > 0) ? new TranspositionTable(EndgameSolver.DEFAULT_MB) : null;
+	    weights = alphaBeta ? loadWeights(config.getWeights()) : null;
+	    book = openBook(config.getBook());
+	    statsOut = openStats(config.getStats());
+	    recordWriter = openRecords(config.getRecord());
+	}
+
+	engine = ownSearchers ? newEngine() : null;
+	ponder = config.isPonder() && engine != null;
+	pns = (ownSearchers && config.getPnsNodes() > 0) ? new ProofNumberSearch(config.getPnsNodes()) : null;
+	solver = (ownSearchers && endgameTable != null) ? new EndgameSolver(endgameTable) : null;
+    }
+
+    /**
+     * Make the next moves with the engine, proof-number search and endgame solver of searchers, which no other thread may use meanwhile; null to give them back.
+     * Only for a bot without searchers of its own, that does not ponder.
+     */
+    void useSearchers(final BotStarter searchers) {
+	engine = (searchers != null) ? searchers.engine : null;
+	pns = (searchers != null) ? searchers.pns : null;
+	solver = (searchers != null) ? searchers.solver : null;
+    }
+
+    /**
+     * Returns the n-tuple weights of file for the alpha-beta evaluation, null for the hand written evaluation
+     */
+    private static float[] loadWeights(final String file) {
+	if (file == null) {
+	    return null;
+	}
+	try {
+	    final NTupleEvaluator evaluator = NTupleEvaluator.load(file);
+	    Log.info("N-tuple evaluation: %s", file);
+	    return evaluator.getWeights();
+	} catch (final IOException e) {
+	    Log.warn("No n-tuple weights, using the heuristic evaluation: %s", e);
+	    return null;
+	}
+    }
+
+    private static OpeningBook openBook(final String file) {
+	if (file == null) {
+	    return null;
+	}
+	try {
+	    final OpeningBook book = OpeningBook.open(file);
+	    Log.info("Opening book: %d positions", book.size());
+	    return book;
+	} catch (final IOException e) {
+	    Log.warn("No opening book: %s", e);
+	    return null;
+	}
+    }
+
+    private static PrintStream openStats(final String file) {
+	if (file == null) {
+	    return null;
+	}
+	try {
+	    return new PrintStream(new BufferedOutputStream(new FileOutputStream(file, true)), false, "UTF-8");
+	} catch (final IOException e) {
+	    Log.warn("No move statistics: %s", e);
+	    return null;
+	}
+    }
+
+    /**
+     * Returns a new search engine of the configured kind that uses the transposition table and weights of the bot, null for the rule based bot
+     */
+    SearchEngine newEngine() {
+	if (config.getEngine().equals(BotConfig.ENGINE_ALPHABETA)) {
+	    return new AlphaBetaSearch((weights != null) ? new NTupleEvaluator(weights) : new HeuristicEvaluator(), searchTable);
+	} else if (config.getEngine().equals(BotConfig.ENGINE_MCTS) && config.getThreads() > 1) {
+	    return new ParallelMctsSearch(config.getThreads(), config.getMctsNodes());
+	} else if (config.getEngine().equals(BotConfig.ENGINE_MCTS)) {
+	    return new MctsSearch(config.getMctsNodes());
+	}
+	return null;
+    }
+
+    private static GameRecordWriter openRecords(final String file) {
+	if (file == null) {
+	    return null;
+	}
+	try {
+	    return GameRecordWriter.open(file);
+	} catch (final IOException e) {
+	    Log.warn("No game records: %s", e);
+	    return null;
+	}
+    }
+
+    public TimeManager getTimeManager() {
+	return timeManager;
+    }
+
+    /**
+     * Our player id (1 or 2), as given by the your_botid setting
+     */
+    public void setBotId(final int id) {
+	botId = id;
+    }
+
+    /**
+     * Makes a turn: from the opening book, a forced win found by the proof-number search, with the endgame solver when few cells are left and it proves a win or a
+     * draw, or else with the configured search engine
+     * (the rule based makeTurn when there is none). After a proven loss the engine still picks the move, the opponent may not find the win.
+     * 
+     * The {@link MoveStats} of the move are sent to the Flight Recorder, call reportMove to log them and write them to the stats file once the move is sent.
+     * 
+     * @param timeLeft
+     *            ms left in our time bank, negative when unknown
+     * @return The global coordinates of the move.
+     */
+    public Move makeTurn(final Field field, final int timeLeft) {
+	final long start = System.nanoTime();
+	stats.begin(start, field.getMoveNr(), field.getRoundNr(), timeLeft, parseNanos);
+	parseNanos = 0;
+	final Move move = chooseMove(field, timeLeft, start);
+	stats.end();
+	if (recording && move != null) {
+	    recordMove(Position.toMove(move.getX(), move.getY()), (int) (stats.getTotalNanos() / 1000000L));
+	}
+	return move;
+    }
+
+    /**
+     * Log the statistics of the last move and write them to the stats file if there is one. Formatting them and the stats file (shared by all bots of a game
+     * server) take time, so this is called after the move has been sent and not by makeTurn.
+     */
+    public void reportMove() {
+	if (Log.isEnabled(Log.INFO)) {
+	    Log.info(stats.toString());
+	}
+	if (statsOut != null) {
+	    statsOut.println(stats.toJson());
+	    statsOut.flush();
+	}
+    }
+
+    private Move chooseMove(final Field field, final int timeLeft, final long start) {
+	stopWarmup();
+	stopPondering();
+	lastMove = -1;
+	myId = botId;
+	position.setFromField(field, myId);
+	if (recordWriter != null) {
+	    followGame();
+	}
+	long mark = stats.addTime(MoveStats.PARSE, start);
+
+	final int bookMove = (book != null) ? book.probe(position) : -1;
+	if (bookMove >= 0) {
+	    stats.addTime(MoveStats.ANALYSIS, mark);
+	    stats.setMove(MoveStats.BOOK, bookMove);
+	    lastMove = bookMove;
+	    return new Move(Position.getX(bookMove), Position.getY(bookMove));
+	}
+	final int budget = timeManager.getBudget(timeLeft, position.getOpenCellCount());
+	stats.setBudget(budget);
+	final long deadline = start + budget * 1000000L;
+	if (pns != null) {
+	    final int winningMove = pns.findWin(position, start + budget * 1000000L / 4);
+	    stats.addNodes(pns.getNodeCount());
+	    if (winningMove >= 0) {
+		stats.addTime(MoveStats.ANALYSIS, mark);
+		stats.setMove(MoveStats.FORCED_WIN, winningMove);
+		lastMove = winningMove;
+		return new Move(Position.getX(winningMove), Position.getY(winningMove));
+	    }
+	}
+	if (solver != null && position.getOpenCellCount() <= endgameCells) {
+	    final int solvedMove = solver.solve(position, start + budget * 1000000L / 2); // keep half for the engine when it does not finish
+	    final int result = solver.getResult();
+	    stats.addNodes(solver.getNodeCount());
+	    Log.info("Endgame: %s, %d nodes, %d ms", (result == EndgameSolver.UNKNOWN) ? "not solved" : RESULT_NAMES[result + 1], solver.getNodeCount(),
+		    (System.nanoTime() - start) / 1000000L);
+	    if (solvedMove >= 0 && result != EndgameSolver.LOSS) {
+		stats.addTime(MoveStats.ANALYSIS, mark);
+		stats.setMove(MoveStats.ENDGAME, solvedMove);
+		lastMove = solvedMove;
+		return new Move(Position.getX(solvedMove), Position.getY(solvedMove));
+	    }
+	}
+	mark = stats.addTime(MoveStats.ANALYSIS, mark);
+	if (engine == null) {
+	    return makeRulesTurn(field, mark);
+	}
+	final int move = engine.findMove(position, deadline);
+	if (move < 0) {
+	    Log.error("ERROR: SEARCH FOUND NO MOVE");
+	    return makeRulesTurn(field, mark);
+	}
+	stats.addTime(MoveStats.SEARCH, mark);
+	stats.setSearch(engine, move);
+	lastMove = move;
+	return new Move(Position.getX(move), Position.getY(move));
+    }
+
+    private Move makeRulesTurn(final Field field, final long mark) {
+	final Move move = makeTurn(field);
+	stats.addTime(MoveStats.SEARCH, mark);
+	stats.setMove(MoveStats.RULES, (move != null) ? Position.toMove(move.getX(), move.getY()) : -1);
+	return move;
+    }
+
+    /**
+     * Bring the record up to date with the position we have to move in. One more mark of the opponent continues the game, anything else ends it and starts a new
+     * one, which is only recorded when we see it from its first move on.
+     */
+    private void followGame() {
+	if (recording) {
+	    final int move = findNextMove(recordPosition, position);
+	    if (move >= 0) {
+		recordMove(move, 0);
+		return;
+	    }
+	    finishGame();
+	}
+	recordPosition.clear();
+	record.clear(myId, System.currentTimeMillis());
+	final int marks = OpeningBook.countMarks(position);
+	recording = marks == 0 || (marks == 1 && findNextMove(recordPosition, position) >= 0);
+	if (recording && marks == 1) {
+	    recordMove(findNextMove(recordPosition, position), 0);
+	}
+    }
+
+    /**
+     * Returns the move that takes from to to, -1 when to does not follow from from
+     */
+    private static int findNextMove(final Position from, final Position to) {
+	final int side = from.getSide();
+	int found = -1;
+	for (int b = 0; b < Position.NR_BOARDS; b++) {
+	    final int before = from.getBoardMask(side, b);
+	    final int after = to.getBoardMask(side, b);
+	    if (from.getBoardMask(3 - side, b) != to.getBoardMask(3 - side, b) || (before & ~after) != 0) {
+		return -1;
+	    }
+	    final int added = after & ~before;
+	    if (added != 0) {
+		if (found >= 0 || Integer.bitCount(added) > 1) {
+		    return -1;
+		}
+		found = b * 9 + Integer.numberOfTrailingZeros(added);
+	    }
+	}
+	return found;
+    }
+
+    private void recordMove(final int move, final int ms) {
+	record.addTime(recordPosition.getSide(), ms);
+	record.addMove(move);
+	recordPosition.makeMove(move);
+	if (recordPosition.isGameOver()) {
+	    finishGame();
+	}
+    }
+
+    /**
+     * Write the record of the game being played, if there is one. Called when a new game starts and when the input ends; a game that the opponent ended is recorded
+     * without a winner.
+     */
+    public void finishGame() {
+	if (!recording) {
+	    return;
+	}
+	recording = false;
+	record.setWinner(recordPosition.getWinner());
+	try {
+	    recordWriter.write(record);
+	} catch (final IOException e) {
+	    Log.warn("Could not write the game record: %s", e);
+	}
+    }
+
+    /**
+     * Returns the statistics of the last move, the record is reused for the next one
+     */
+    public MoveStats getMoveStats() {
+	return stats;
+    }
+
+    /**
+     * Count time spent on parsing the protocol lines for the next move
+     */
+    public void addParseTime(final long nanos) {
+	parseNanos += nanos;
+    }
+
+    /**
+     * Keep searching on a background thread from the position after our last move, until stopPondering is called. Whatever the engine keeps between searches (the
+     * transposition table or the MCTS tree) is then reused for our next move.
+     */
+    public void startPondering() {
+	if (!ponder || lastMove < 0 || ponderThread != null) {
+	    return;
+	}
+	ponderPosition.copyFrom(position);
+	ponderPosition.makeMove(lastMove);
+	if (ponderPosition.isGameOver()) {
+	    return;
+	}
+	ponderThread = new Thread(new Runnable() {
+	    @Override
+	    public void run() {
+		engine.findMove(ponderPosition, Long.MAX_VALUE);
+	    }
+	}, "ponder");
+	ponderThread.setDaemon(true);
+	ponderThread.start();
+    }
+
+    /**
+     * Stop the ponder search and wait for it to end
+     */
+    public void stopPondering() {
+	if (ponderThread == null) {
+	    return;
+	}
+	try {
+	    // the search may not have started yet and would clear a single stop request
+	    do {
+		engine.stop();
+		ponderThread.join(1);
+	    } while (ponderThread.isAlive());
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	ponderThread = null;
+    }
+
+    /**
+     * Warm up on a background thread (see warmUp) until stopWarmup is called or the configured warmup time is over. Only the first call does anything: the parser
+     * calls it when the settings arrive, so the warmup uses the time until our first move.
+     */
+    public void startWarmup() {
+	if (warmupStarted || config.getWarmupMs() <= 0) {
+	    return;
+	}
+	warmupStarted = true;
+	final long deadline = System.nanoTime() + config.getWarmupMs() * 1000000L;
+	warmupThread = new Thread(new Runnable() {
+	    @Override
+	    public void run() {
+		warmUp(deadline);
+	    }
+	}, "warmup");
+	warmupThread.setDaemon(true);
+	warmupThread.start();
+    }
+
+    /**
+     * Stop the warmup and wait for it to end
+     */
+    public void stopWarmup() {
+	if (warmupThread == null) {
+	    return;
+	}
+	warmupStopped = true;
+	try {
+	    // like the ponder search, a search that has not started yet would clear a single stop request
+	    do {
+		if (engine != null) {
+		    engine.stop();
+		}
+		if (pns != null) {
+		    pns.stop();
+		}
+		if (solver != null) {
+		    solver.stop();
+		}
+		warmupThread.join(1);
+	    } while (warmupThread.isAlive());
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	warmupThread = null;
+    }
+
+    /**
+     * Stop the background searches and release the threads of the engine, the bot can not move anymore afterwards. A bot without searchers of its own must have given
+     * the borrowed ones back first.
+     */
+    public void close() {
+	stopWarmup();
+	stopPondering();
+	if (engine != null) {
+	    engine.close();
+	}
+    }
+
+    /**
+     * Run the code of a move on canned positions, with searches of WARMUP_SLICE_MS, until deadline or stopWarmup. That builds the lookup tables and loads the classes,
+     * and the JIT compiles what a real move runs: the protocol parsing, the book, the proof-number search, the endgame solver, the engine (or the rule based bot)
+     * and the move statistics. No stats are written and no games recorded, but the transposition tables and the engine are used, so never call it during a move.
+     */
+    public void warmUp(final long deadline) {
+	final long start = System.nanoTime();
+	final Position[] positions = getCannedPositions();
+	final Field field = new Field();
+	final Position parsed = new Position();
+	final MoveStats scratch = new MoveStats();
+	int searched = 0;
+	while (!isWarmupOver(deadline)) {
+	    for (final Position canned : positions) {
+		if (isWarmupOver(deadline)) {
+		    break;
+		}
+		final long now = System.nanoTime();
+		final long sliceEnd = Math.min(deadline, now + WARMUP_SLICE_MS * 1000000L);
+		final byte[] fieldData = canned.toFieldString().getBytes(StandardCharsets.US_ASCII);
+		final byte[] macroData = canned.toMacroboardString().getBytes(StandardCharsets.US_ASCII);
+		field.parseFromBytes(fieldData, 0, fieldData.length);
+		field.parseMacroboardFromBytes(macroData, 0, macroData.length);
+		parsed.setFromField(field, canned.getSide());
+		final int marks = OpeningBook.countMarks(parsed);
+		scratch.begin(now, marks + 1, marks / 2 + 1, -1, 0);
+		if (book != null) {
+		    book.probe(parsed);
+		}
+		if (pns != null && !isWarmupOver(deadline)) {
+		    pns.findWin(parsed, sliceEnd);
+		}
+		if (solver != null && parsed.getOpenCellCount() <= endgameCells && !isWarmupOver(deadline)) {
+		    solver.solve(parsed, sliceEnd);
+		}
+		if (isWarmupOver(deadline)) {
+		    break;
+		}
+		if (engine != null) {
+		    scratch.setSearch(engine, engine.findMove(parsed, sliceEnd));
+		} else if (botId != 0) {
+		    makeTurn(field);
+		}
+		scratch.addTime(MoveStats.SEARCH, now);
+		scratch.toJson();
+		scratch.toString();
+		searched++;
+	    }
+	}
+	Log.info("Warmup: %d positions in %d ms", searched, (System.nanoTime() - start) / 1000000L);
+    }
+
+    private boolean isWarmupOver(final long deadline) {
+	return warmupStopped || System.nanoTime() >= deadline;
+    }
+
+    /**
+     * Positions of random games from the start on, every WARMUP_PLY_STEP plies; the same every time
+     */
+    private static Position[] getCannedPositions() {
+	final List<Position> positions = new ArrayList<Position>();
+	final int[] moves = new int[Position.NR_CELLS];
+	final FastRandom random = new FastRandom(1);
+	for (int game = 0; game < WARMUP_GAMES; game++) {
+	    final Position position = new Position();
+	    for (int ply = 0; !position.isGameOver(); ply++) {
+		if (ply % WARMUP_PLY_STEP == 0) {
+		    final Position canned = new Position();
+		    canned.copyFrom(position);
+		    positions.add(canned);
+		}
+		position.makeMove(moves[random.nextInt(position.generateMoves(moves))]);
+	    }
+	}
+	return positions.toArray(new Position[positions.size()]);
     }
 
     /**
@@ -52,23 +596,19 @@ public class BotStarter {
      * @return The column where the turn was made.
      */
     public Move makeTurn(final Field field) {
-	// initialization
-	gameField = field;
-	myId = BotParser.mBotId;
-	oppId = 3 - myId;
-
 	int mx = -1, my = -1;
-	System.err.println(field.toString()); // debug
+	if (Log.isDebug()) {
+	    Log.debug(field.toString());
+	}
 
-	macroField.clearBoard();
+	prepare(field);
 	smallField.clearBoard();
-
-	// get big board
-	macroField.setBoard(gameField.getValidMacroBoard());
-	System.err.println(macroField.toString());
+	if (Log.isDebug()) {
+	    Log.debug(macroField.toString());
+	}
 
 	final List<Move> activeBoards = gameField.getActiveMicroBoards();
-	System.err.println("Active boards: " + activeBoards.toString());
+	Log.debug("Active boards: %s", activeBoards);
 	if (activeBoards.size() == 1) {
 	    final Move activeBoard = activeBoards.get(0);
 	    mx = activeBoard.mX;
@@ -76,18 +616,20 @@ public class BotStarter {
 	}
 
 	if (mx >= 0 && my >= 0) { // play on a designated small field
-	    System.err.println("Playing on microboard: " + mx + " " + my);
+	    Log.debug("Playing on microboard: %d %d", mx, my);
 	    smallField.setBoard(gameField.getMicroBoard(mx, my));
 	    final Move safeMove = getSafeMove(smallField, myId, oppId);
 	    if (safeMove != null) { // this is ideal
-		System.err.println(smallField.toString());
-		System.err.println("Keeping it safe: " + safeMove.mX + " " + safeMove.mY);
+		if (Log.isDebug()) {
+		    Log.debug(smallField.toString());
+		}
+		Log.debug("Keeping it safe: %d %d", safeMove.mX, safeMove.mY);
 		return translateMovetoGlobal(mx, my, safeMove);
 	    }
 	} else { // this means we get to choose the small field
 	    final List<Move> myMacroMoveList = getOrderedMoveList(macroField, myId); // my moves on the big field
 	    if (myMacroMoveList.size() < 1) {
-		System.err.println("ERROR: NO MACRO MOVES POSSIBLE");
+		Log.error("ERROR: NO MACRO MOVES POSSIBLE");
 		return null;
 	    }
 
@@ -100,13 +642,15 @@ public class BotStarter {
 		if (macroField.isValidMove(bx, by)) {
 		    macroField.setMark(bx, by, myId);
 		    if (macroField.hasThreeInARow(myId)) {
-			System.err.println("Possibility for global win on position " + bx + " " + by);
+			Log.debug("Possibility for global win on position %d %d", bx, by);
 			smallField.setBoard(gameField.getMicroBoard(bx, by));
 			final List<Move> winningMoves = getWinningMoves(smallField, myId);
 			if (winningMoves.size() > 0) {
 			    final Move finishingMove = winningMoves.get(0);
-			    System.err.println("Choosing winning microboard: " + bx + " " + by);
-			    System.err.println(smallField.toString());
+			    Log.debug("Choosing winning microboard: %d %d", bx, by);
+			    if (Log.isDebug()) {
+				Log.debug(smallField.toString());
+			    }
 			    return translateMovetoGlobal(bx, by, finishingMove);
 			}
 		    }
@@ -122,8 +666,10 @@ public class BotStarter {
 		if (safeMove != null) { // this is ideal
 		    mx = potentialBoardCoords.mX;
 		    my = potentialBoardCoords.mY;
-		    System.err.println("Choosing safe microboard: " + mx + " " + my);
-		    System.err.println(smallField.toString());
+		    Log.debug("Choosing safe microboard: %d %d", mx, my);
+		    if (Log.isDebug()) {
+			Log.debug(smallField.toString());
+		    }
 		    return translateMovetoGlobal(mx, my, safeMove);
 		}
 	    }
@@ -132,17 +678,19 @@ public class BotStarter {
 	    final Move boardCoords = myMacroMoveList.get(0);
 	    mx = boardCoords.mX;
 	    my = boardCoords.mY;
-	    System.err.println("Choosing (unsafe) microboard: " + mx + " " + my);
+	    Log.debug("Choosing (unsafe) microboard: %d %d", mx, my);
 	    // TODO: choose better?
 	}
 
 	// if we are here, we are not playing safe moves ^^
 	smallField.setBoard(gameField.getMicroBoard(mx, my));
-	System.err.println(smallField.toString());
+	if (Log.isDebug()) {
+	    Log.debug(smallField.toString());
+	}
 
 	final List<Move> localMoveList = getOrderedMoveList(smallField, myId);
 	if (localMoveList.size() < 1) { // whoops
-	    System.err.println("ERROR: NO MICRO MOVES POSSIBLE");
+	    Log.error("ERROR: NO MICRO MOVES POSSIBLE");
 	    return null;
 	}
 
@@ -150,42 +698,47 @@ public class BotStarter {
 	return translateMovetoGlobal(mx, my, localMove);
     }
 
-    private Move getSafeMove(final TTTField currentField, final int myId, final int oppId) {
-	// get coordinates to fields that have not been won or tied yet
-	final List<Move> blockingMoves = macroField.getAvailableMoves();
-	System.err.println("Moves leading to no choice for enemy: \n\t" + blockingMoves.toString());
-
-	if (blockingMoves.size() > 0) {
-	    final List<Move> safeMoves = new ArrayList<Move>();
-	    Move potentialMove;
-	    final TTTField nextEnemyField = new TTTField();
-	    // look for safe moves
-	    for (int m = 0; m < blockingMoves.size(); m++) {
-		potentialMove = blockingMoves.get(m);
-		if (currentField.isValidMove(potentialMove)) { // is this a move we can make?
-		    nextEnemyField.setBoard(gameField.getMicroBoard(potentialMove.mX, potentialMove.mY)); // board for enemy in next turn
-		    if (!nextEnemyField.hasSomeInLine(oppId, 2)) { // as safe as it gets
-			safeMoves.add(potentialMove);
-		    }
+    /**
+     * Initialization of the rule based bot: the game field, the player ids and the big board
+     */
+    void prepare(final Field field) {
+	gameField = field;
+	myId = botId;
+	oppId = 3 - myId;
+	macroField.clearBoard();
+	macroField.setBoard(gameField.getValidMacroBoard());
+    }
+
+    Move getSafeMove(final TTTField currentField, final int myId, final int oppId) {
+	// boards that have not been won or tied yet: a move there leaves the enemy no choice
+	final int blockingSquares = macroField.getAvailableMask() & currentField.getEmptyMask();
+	Log.debug("Moves leading to no choice for enemy: %s", Integer.toBinaryString(blockingSquares));
+
+	int safeSquares = 0;
+	for (int cell = 0; cell < 9; cell++) {
+	    if ((blockingSquares & (1 << cell)) != 0) {
+		final int nextEnemyCode = gameField.getMicroCode(cell % 3, cell / 3); // board for enemy in next turn
+		if (!MicroTable.hasTwoInLine(nextEnemyCode, oppId)) { // as safe as it gets
+		    safeSquares |= 1 << cell;
 		}
 	    }
-	    System.err.println("Moves leading to no choice + no win for enemy: \n\t" + safeMoves.toString());
+	}
+	Log.debug("Moves leading to no choice + no win for enemy: %s", Integer.toBinaryString(safeSquares));
 
-	    if (safeMoves.size() == 0) {
-		// no options
-		return null;
-	    } else if (safeMoves.size() == 1) {
-		// only one choice -> go for it
-		return safeMoves.get(0);
-	    } else { // more than one choice -> YAY
-		// get a sorted move list for this field
-		final List<Move> availableMoves = getOrderedMoveList(currentField, myId);
-		for (int m = 0; m < availableMoves.size(); m++) {
-		    potentialMove = availableMoves.get(m);
-		    if (safeMoves.contains(potentialMove)) {
-			return potentialMove;
-		    }
-		}
+	if (safeSquares == 0) {
+	    // no options
+	    return null;
+	}
+	if (Integer.bitCount(safeSquares) == 1) {
+	    // only one choice -> go for it
+	    final int cell = Integer.numberOfTrailingZeros(safeSquares);
+	    return new Move(cell % 3, cell / 3);
+	}
+	// more than one choice -> YAY, take the first one of the sorted move list for this field
+	final int nrCells = getOrderedCells(currentField, myId, orderedCells);
+	for (int i = 0; i < nrCells; i++) {
+	    if ((safeSquares & (1 << orderedCells[i])) != 0) {
+		return new Move(orderedCells[i] % 3, orderedCells[i] / 3);
 	    }
 	}
 	return null;
@@ -203,141 +756,149 @@ public class BotStarter {
      * @return
      */
     private Move translateMovetoGlobal(int mx, int my, final Move localMove) {
-	System.err.println("Local move: " + localMove.mX + " " + localMove.mY);
+	Log.debug("Local move: %d %d", localMove.mX, localMove.mY);
 	mx = mx * 3 + localMove.mX;
 	my = my * 3 + localMove.mY;
-	System.err.println("Global coords: " + mx + " " + my);
+	Log.debug("Global coords: %d %d", mx, my);
 	return new Move(mx, my);
     }
 
     private List<Move> getWinningMoves(final TTTField tttField, final int playerId) {
 	final ArrayList<Move> moves = new ArrayList<Move>();
 
-	for (int y = 0; y < 3; y++) {
-	    for (int x = 0; x < 3; x++) {
-		if (tttField.isValidMove(x, y)) {
-		    tttField.setMark(x, y, playerId);
-		    if (tttField.hasThreeInARow(playerId)) {
-			System.err.println(String.format("Player %d can win on %d %d", playerId, x, y));
-			moves.add(new Move(x, y));
-		    }
-		    tttField.removeMark(x, y);
-		}
+	final int winningSquares = MicroTable.getWinSquares(tttField.getCode(), playerId) & tttField.getEmptyMask();
+	for (int cell = 0; cell < 9; cell++) {
+	    if ((winningSquares & (1 << cell)) != 0) {
+		final int x = cell % 3, y = cell / 3;
+		Log.debug("Player %d can win on %d %d", playerId, x, y);
+		moves.add(new Move(x, y));
 	    }
 	}
 
 	return moves;
     }
 
-    private List<Move> getTwoInlineMoves(final TTTField tttField, final int playerId) {
-	final ArrayList<Move> moves = new ArrayList<Move>();
-
-	for (int y = 2; y >= 0; y--) {
-	    for (int x = 0; x < 3; x++) {
-		if (tttField.isValidMove(x, y)) {
-		    if (!tttField.hasSomeInLine(playerId, 2)) { // no marks to begin with
-			tttField.setMark(x, y, playerId);
-			if (tttField.hasSomeInLine(playerId, 2)) { // a mark appears
-			    moves.add(new Move(x, y));
-			}
-			tttField.removeMark(x, y);
-		    }
-		}
-	    }
+    /**
+     * The available moves of a 3x3 field, best first
+     */
+    List<Move> getOrderedMoveList(final TTTField tttField, final int playerId) {
+	final int nrCells = getOrderedCells(tttField, playerId, orderedCells);
+	final List<Move> moves = new ArrayList<Move>(nrCells);
+	for (int i = 0; i < nrCells; i++) {
+	    moves.add(new Move(orderedCells[i] % 3, orderedCells[i] / 3));
 	}
-
 	return moves;
     }
 
-    // TODO: check if order makes sense
+    /**
+     * Writes the available cells of a 3x3 field (y * 3 + x) to cells, best first. A mask of the cells that are already in the list keeps every cell to its first
+     * (best) rule.
+     * 
+     * @return the number of cells
+     */
     // TODO: filter out pointless moves (that can not lead to three in a row
-    private List<Move> getOrderedMoveList(final TTTField tttField, final int playerId) {
-	final ArrayList<Move> moves = new ArrayList<Move>();
+    int getOrderedCells(final TTTField tttField, final int playerId, final int[] cells) {
 	final int oppId = 3 - playerId;
+	final int code = tttField.getCode();
+	final int empty = tttField.getEmptyMask();
+	int count = 0, seen = 0;
 
 	// Win: If the player has two in a row, they can place a third to get three in a row.
-	moves.addAll(getWinningMoves(tttField, playerId));
+	final int wins = MicroTable.getWinSquares(code, playerId) & empty;
+	count = addCells(cells, count, wins & ~seen);
+	seen |= wins;
 
 	// Block: If the opponent has two in a row, the player must play the third themselves to block the opponent.
-	moves.addAll(getWinningMoves(tttField, oppId));
+	final int blocks = MicroTable.getWinSquares(code, oppId) & empty;
+	count = addCells(cells, count, blocks & ~seen);
+	seen |= blocks;
+
+	// Fork: Create an opportunity where the player has two threats to win (two non-blocked lines of 2).
+	final int forks = MicroTable.getForkSquares(code, playerId) & empty;
+	count = addCells(cells, count, forks & ~seen);
+	seen |= forks;
 
-	// Fork: Create an opportunity where the player has two threats to win (two non-blocked lines of 2)..
-	// TODO: don't know how to do that
-	/**
-	 * Blocking an opponent's fork: Option 1: The player should create two in a row to force the opponent into defending, as long as it doesn't result in them creating a fork.
-	 * For example, if "X" has a corner, "O" has the center, and "X" has the opposite corner as well, "O" must not play a corner in order to win. (Playing a corner in this
-	 * scenario creates a fork for "X" to win.) Option 2: If there is a configuration where the opponent can fork, the player should block that fork.
-	 */
-	// TODO: don't know how to do that
+	// Blocking an opponent's fork: create two in a row to force the opponent into defending, as long as that defence does not give them a fork, or else take the
+	// square that leaves them no fork.
+	final int forkBlocks = MicroTable.getForkBlockSquares(code, playerId) & empty;
+	count = addCells(cells, count, forkBlocks & ~seen);
+	seen |= forkBlocks;
 
 	// try to get two in line
-	moves.addAll(getTwoInlineMoves(tttField, playerId));
+	final int twos = MicroTable.getTwoInLineSquares(code, playerId) & empty;
+	count = addCells(cells, count, twos & ~seen, LAST_ROW_FIRST);
+	seen |= twos;
 
 	// try to block enemy two in line
-	moves.addAll(getTwoInlineMoves(tttField, oppId));
+	final int enemyTwos = MicroTable.getTwoInLineSquares(code, oppId) & empty;
+	count = addCells(cells, count, enemyTwos & ~seen, LAST_ROW_FIRST);
+	seen |= enemyTwos;
 
 	// Center: A player marks the center.
-	if (tttField.isValidMove(1, 1)) {
-	    final Move newMove = new Move(1, 1);
-	    if (!moves.contains(newMove)) {
-		moves.add(newMove);
-	    }
-	}
+	final int center = TTTLookup.bit(1, 1) & empty;
+	count = addCells(cells, count, center & ~seen);
+	seen |= center;
 
 	// Opposite corner: If the opponent is in the corner, the player plays the opposite corner.
-	Move corner, move;
-	for (int m = 0; m < cornerList.size(); m++) {
-	    corner = cornerList.get(m);
-	    if (tttField.hasMark(corner.mX, corner.mY, oppId)) {
-		move = new Move(2 - corner.mX, 2 - corner.mY); // opposite corner
-		if (tttField.isValidMove(move.mX, move.mY)) {
-		    if (!moves.contains(move)) {
-			moves.add(move);
-		    }
-		}
+	for (final int corner : CORNERS) {
+	    if (tttField.hasMark(corner % 3, corner / 3, oppId)) {
+		final int opposite = (1 << (8 - corner)) & empty;
+		count = addCells(cells, count, opposite & ~seen);
+		seen |= opposite;
 	    }
 	}
 
 	// Empty corner: The player plays in a corner square.
-	for (int m = 0; m < cornerList.size(); m++) {
-	    corner = cornerList.get(m);
-	    if (tttField.isValidMove(corner.mX, corner.mY)) {
-		final Move newMove = new Move(corner.mX, corner.mY);
-		if (!moves.contains(newMove)) {
-		    moves.add(newMove);
-		}
-	    }
+	for (final int corner : CORNERS) {
+	    final int emptyCorner = (1 << corner) & empty;
+	    count = addCells(cells, count, emptyCorner & ~seen);
+	    seen |= emptyCorner;
 	}
 
-	// TODO: Empty side: The player plays in a middle square on any of the 4 sides.
+	// Empty side: The player plays in a middle square on any of the 4 sides.
+	final int emptySides = SIDES & empty;
+	count = addCells(cells, count, emptySides & ~seen);
+	seen |= emptySides;
 
 	// any other moves are added randomly
-	final List<Move> availableMoves = tttField.getAvailableMoves();
-	int idx;
-	Move mv;
-	while (!availableMoves.isEmpty()) {
-	    idx = rand.nextInt(availableMoves.size());
-	    mv = availableMoves.get(idx);
-	    if (!moves.contains(mv)) {
-		moves.add(mv);
-	    }
-	    availableMoves.remove(idx);
+	final int first = count;
+	count = addCells(cells, count, tttField.getAvailableMask() & ~seen);
+	for (int i = count - 1; i > first; i--) {
+	    final int j = first + rand.nextInt(i - first + 1);
+	    final int cell = cells[i];
+	    cells[i] = cells[j];
+	    cells[j] = cell;
 	}
+	return count;
+    }
 
-	// remove all duplicates // TODO: make more elegant
-	final List<Move> filteredList = new ArrayList<Move>();
-	for (int m = 0; m < moves.size(); m++) {
-	    mv = moves.get(m);
-	    if (!filteredList.contains(mv)) {
-		filteredList.add(mv);
+    /**
+     * Appends the cells of mask to cells in the given order, returns the new count
+     */
+    private static int addCells(final int[] cells, int count, final int mask, final int[] order) {
+	for (final int cell : order) {
+	    if ((mask & (1 << cell)) != 0) {
+		cells[count++] = cell;
 	    }
 	}
+	return count;
+    }
 
-	return filteredList;
+    /**
+     * Appends the cells of mask to cells, returns the new count
+     */
+    private static int addCells(final int[] cells, int count, int mask) {
+	while (mask != 0) {
+	    cells[count++] = Integer.numberOfTrailingZeros(mask);
+	    mask &= mask - 1;
+	}
+	return count;
     }
 
     public static void main(String[] args) {
-	final BotParser parser = new BotParser(new BotStarter());
+	final BotConfig config = BotConfig.parse(args);
+	Log.setLevel(config.getLogLevel());
+	final BotParser parser = new BotParser(new BotStarter(config));
 	parser.run();
     }
 }
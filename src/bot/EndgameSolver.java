@@ -0,0 +1,185 @@
+package bot;
+
+/**
+ * EndgameSolver class
+ *
+ * Exact win/draw/loss search to the end of the game, for positions with few empty cells left. Scores are only -1, 0 and 1 (for the side to move), so the alpha-beta
+ * windows are tiny and most nodes are settled by the first move that reaches the bound. Proven results are kept in a {@link TranspositionTable} of its own (the
+ * scores do not mix with those of the heuristic search), with the number of open cells as depth.
+ *
+ * A solve that runs out of time gives no answer at all: a half finished proof proves nothing.
+ *
+ * @author stilkin
+ */
+public class EndgameSolver {
+    public static final int LOSS = -1, DRAW = 0, WIN = 1;
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    public static final int DEFAULT_MB = 16;
+    private static final int TIME_CHECK_INTERVAL = 1023; // nodes between two looks at the clock
+
+    private final TranspositionTable mTable;
+    private int mAge; // of the running solve in the table
+    private final Position mPosition = new Position();
+    private final int[][] mMoves = new int[AlphaBetaSearch.MAX_PLY][Position.NR_CELLS];
+    private final int[][] mMoveScores = new int[AlphaBetaSearch.MAX_PLY][Position.NR_CELLS];
+
+    private long mDeadline;
+    private volatile boolean mStopped;
+    private boolean mAborted;
+    private long mNodes;
+    private int mResult = UNKNOWN;
+
+    public EndgameSolver(final TranspositionTable table) {
+	mTable = table;
+    }
+
+    /**
+     * Solve position before the deadline
+     *
+     * @return the best move, -1 when the solve did not finish (or there are no moves)
+     */
+    public int solve(final Position position, final long deadline) {
+	mPosition.copyFrom(position);
+	mDeadline = deadline;
+	mStopped = false;
+	mAborted = false;
+	mNodes = 0;
+	mResult = UNKNOWN;
+	mAge = mTable.newSearch();
+	try {
+	    return solveRoot();
+	} finally {
+	    mTable.endSearch(mAge);
+	}
+    }
+
+    private int solveRoot() {
+	final int[] moves = mMoves[0];
+	final int nrMoves = mPosition.generateMoves(moves);
+	if (nrMoves == 0) {
+	    return -1;
+	}
+	final long entry = mTable.probe(mPosition.getHash());
+	orderMoves(0, nrMoves, (entry == TranspositionTable.MISS) ? -1 : TranspositionTable.getMove(entry));
+
+	int best = LOSS - 1;
+	int bestMove = -1;
+	for (int i = 0; i < nrMoves && best < WIN; i++) {
+	    mPosition.makeMove(moves[i]);
+	    final int score = -negamax(LOSS, -Math.max(best, LOSS), 1);
+	    mPosition.unmakeMove();
+	    if (mAborted) {
+		return -1;
+	    }
+	    if (score > best) {
+		best = score;
+		bestMove = moves[i];
+	    }
+	}
+	mResult = best;
+	mTable.store(mPosition.getHash(), best, bestMove, mPosition.getOpenCellCount(), TranspositionTable.EXACT, mAge);
+	return bestMove;
+    }
+
+    private int negamax(int alpha, final int beta, final int ply) {
+	mNodes++;
+	if ((mNodes & TIME_CHECK_INTERVAL) == 0 && (mStopped || System.nanoTime() >= mDeadline)) {
+	    mAborted = true;
+	}
+	if (mAborted) {
+	    return DRAW;
+	}
+
+	final int winner = mPosition.getWinner();
+	if (winner != Position.NONE) {
+	    // the side that just moved can only have won or drawn
+	    return (winner == Position.DRAW) ? DRAW : LOSS;
+	}
+
+	final long hash = mPosition.getHash();
+	final long entry = mTable.probe(hash);
+	int tableMove = -1;
+	if (entry != TranspositionTable.MISS) {
+	    tableMove = TranspositionTable.getMove(entry);
+	    final int score = TranspositionTable.getScore(entry);
+	    final int bound = TranspositionTable.getBound(entry);
+	    if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta) || (bound == TranspositionTable.UPPER && score <= alpha)) {
+		return score;
+	    }
+	}
+
+	final int[] moves = mMoves[ply];
+	final int nrMoves = mPosition.generateMoves(moves);
+	orderMoves(ply, nrMoves, tableMove);
+
+	final int alphaStart = alpha;
+	int best = LOSS - 1;
+	int bestMove = -1;
+	for (int i = 0; i < nrMoves; i++) {
+	    mPosition.makeMove(moves[i]);
+	    final int score = -negamax(-beta, -alpha, ply + 1);
+	    mPosition.unmakeMove();
+	    if (mAborted) {
+		return DRAW;
+	    }
+	    if (score > best) {
+		best = score;
+		bestMove = moves[i];
+		if (score > alpha) {
+		    alpha = score;
+		    if (alpha >= beta) {
+			break;
+		    }
+		}
+	    }
+	}
+
+	final int bound = (best >= beta) ? TranspositionTable.LOWER : ((best > alphaStart) ? TranspositionTable.EXACT : TranspositionTable.UPPER);
+	mTable.store(hash, best, bestMove, mPosition.getOpenCellCount(), bound, mAge);
+	return best;
+    }
+
+    /**
+     * The move from the table first, then moves that win a board or block one, moves that hand the opponent a free choice last
+     */
+    private void orderMoves(final int ply, final int nrMoves, final int tableMove) {
+	final int[] moves = mMoves[ply];
+	final int[] scores = mMoveScores[ply];
+	final int side = mPosition.getSide();
+	final int decided = mPosition.getDecidedBoards();
+	for (int i = 0; i < nrMoves; i++) {
+	    final int board = moves[i] / 9;
+	    final int square = moves[i] % 9;
+	    int score = 0;
+	    if ((TTTLookup.WIN_SQUARES[mPosition.getBoardMask(side, board)] & (1 << square)) != 0) {
+		score += 100;
+	    }
+	    if ((TTTLookup.WIN_SQUARES[mPosition.getBoardMask(3 - side, board)] & (1 << square)) != 0) {
+		score += 50;
+	    }
+	    if ((decided & (1 << square)) != 0) {
+		score -= 100;
+	    }
+	    if (moves[i] == tableMove) {
+		score += 1000;
+	    }
+	    scores[i] = score;
+	}
+	AlphaBetaSearch.sortMoves(moves, scores, nrMoves);
+    }
+
+    public void stop() {
+	mStopped = true;
+    }
+
+    /**
+     * Returns WIN, DRAW or LOSS for the side to move of the last solve, UNKNOWN when it did not finish
+     */
+    public int getResult() {
+	return mResult;
+    }
+
+    public long getNodeCount() {
+	return mNodes;
+    }
+}
@@ -0,0 +1,14 @@
+package bot;
+
+/**
+ * Static evaluation of a position that is not finished yet.
+ *
+ * @author stilkin
+ */
+public interface Evaluator {
+
+    /**
+     * Returns the value of the position for the side to move, positive is good. Must stay well inside +/- {@link AlphaBetaSearch#WIN}.
+     */
+    int evaluate(Position position);
+}
@@ -0,0 +1,30 @@
+package bot;
+
+/**
+ * Small xorshift generator for playouts: no synchronization and no allocation, unlike java.util.Random.
+ *
+ * @author stilkin
+ */
+public class FastRandom {
+    private long mState;
+
+    public FastRandom(final long seed) {
+	mState = (seed == 0) ? 0x9E3779B97F4A7C15L : seed;
+    }
+
+    public long nextLong() {
+	long x = mState;
+	x ^= x << 13;
+	x ^= x >>> 7;
+	x ^= x << 17;
+	mState = x;
+	return x;
+    }
+
+    /**
+     * Returns a number between 0 (inclusive) and bound (exclusive)
+     */
+    public int nextInt(final int bound) {
+	return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+}
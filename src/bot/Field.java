@@ -18,6 +18,7 @@
 package bot;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -25,6 +26,10 @@ import java.util.List;
  * 
  * Handles everything that has to do with the field, such as storing the current state and performing calculations on the field.
  * 
+ * Every update is compared with the previous state and only the cells and boards that changed are touched: the marks of each microboard (as 9-bit masks, see
+ * {@link TTTLookup}), its fill count, the full and won flags, the valid macroboard and the active boards are kept up to date as cells change, so a turn costs in
+ * proportion to the two cells that changed and not the whole field. Boards are numbered y * 3 + x.
+ * 
  * @author Jim van Eeden <jim@starapple.nl>, Joost de Meij <joost@starapple.nl>
  */
 
@@ -37,12 +42,80 @@ public class Field {
     private String mLastError = "";
     private int mLastX = 0, mLastY = 0;
 
+    // derived from mBoard and mMacroboard, updated on every change
+    private final int[][] mMicroMasks = new int[3][9];
+    private final int[] mFillCounts = new int[9];
+    private final int[][] mValidMacroboard = new int[3][3];
+    private final int[] mWonBoards = new int[3];
+    private int mFullBoards = 0;
+    private int mActiveBoards = 0;
+    private List<Move> mActiveList = Collections.emptyList();
+    private int mActiveListBoards = 0; // the active boards mActiveList was made for
+
     public Field() {
 	mBoard = new int[COLS][ROWS];
 	mMacroboard = new int[COLS / 3][ROWS / 3];
 	clearBoard();
     }
 
+    /**
+     * Change one cell and everything that depends on it
+     */
+    private void setCell(final int x, final int y, final int value) {
+	final int old = mBoard[x][y];
+	if (old == value) {
+	    return;
+	}
+	mBoard[x][y] = value;
+	final int board = (y / 3) * 3 + x / 3;
+	final int bit = TTTLookup.bit(x % 3, y % 3);
+	if (old == 1 || old == 2) {
+	    mMicroMasks[old][board] &= ~bit;
+	    mFillCounts[board]--;
+	}
+	if (value == 1 || value == 2) {
+	    mMicroMasks[value][board] |= bit;
+	    mFillCounts[board]++;
+	}
+	updateBoard(board);
+    }
+
+    /**
+     * Change one macroboard value and everything that depends on it
+     */
+    private void setMacro(final int x, final int y, final int value) {
+	if (mMacroboard[x][y] == value) {
+	    return;
+	}
+	mMacroboard[x][y] = value;
+	final int board = y * 3 + x;
+	if (value == -1) {
+	    mActiveBoards |= 1 << board;
+	} else {
+	    mActiveBoards &= ~(1 << board);
+	}
+	updateBoard(board);
+    }
+
+    private void updateBoard(final int board) {
+	final int x = board % 3, y = board / 3;
+	final int bit = 1 << board;
+	final boolean full = mFillCounts[board] == 9;
+	mFullBoards = full ? (mFullBoards | bit) : (mFullBoards & ~bit);
+	final int winner = MicroTable.getWinner(getMicroCode(x, y));
+	mWonBoards[1] = (winner == 1) ? (mWonBoards[1] | bit) : (mWonBoards[1] & ~bit);
+	mWonBoards[2] = (winner == 2) ? (mWonBoards[2] | bit) : (mWonBoards[2] & ~bit);
+
+	int valid = mMacroboard[x][y];
+	if (valid == 0 && full) {
+	    valid = 9; // TODO: what value? enemy id?
+	    if (mValidMacroboard[x][y] != 9) {
+		Log.debug("Disabling full microboard: %d %d", x, y);
+	    }
+	}
+	mValidMacroboard[x][y] = valid;
+    }
+
     /* MY CODE */
 
     /**
@@ -65,23 +138,58 @@ public class Field {
 	return microBoard;
     }
 
-    public int[][] getValidMacroBoard() {
-	final int[][] validMacroBoard = new int[3][3];
-	final TTTField smallField = new TTTField();
-	for (int i = 0; i < 3; i++) {
-	    for (int j = 0; j < 3; j++) {
-		validMacroBoard[i][j] = mMacroboard[i][j];
-		if (validMacroBoard[i][j] == 0) {
-		    smallField.setBoard(getMicroBoard(i, j));
-		    if (smallField.isFull()) {
-			validMacroBoard[i][j] = 9; // TODO: what value? enemy id?
-			System.err.println("Disabling full microboard: " + i + " " + j);
-		    }
-		}
-	    }
-	}
+    /**
+     * Get the base-3 code of a small board, see {@link MicroTable}
+     * 
+     * @param x
+     * @param y
+     * @return
+     */
+    public int getMicroCode(final int x, final int y) {
+	final int board = y * 3 + x;
+	return MicroTable.code(mMicroMasks[1][board], mMicroMasks[2][board]);
+    }
+
+    /**
+     * Get the 9-bit mask of the cells of player on a small board
+     */
+    public int getMicroMask(final int x, final int y, final int player) {
+	return mMicroMasks[player][y * 3 + x];
+    }
+
+    /**
+     * Get the number of marks on a small board
+     */
+    public int getFillCount(final int x, final int y) {
+	return mFillCounts[y * 3 + x];
+    }
+
+    /**
+     * Returns the 9-bit mask of the full boards
+     */
+    public int getFullBoards() {
+	return mFullBoards;
+    }
+
+    /**
+     * Returns the 9-bit mask of the boards with three in a row for player
+     */
+    public int getWonBoards(final int player) {
+	return mWonBoards[player];
+    }
+
+    /**
+     * Returns the 9-bit mask of the boards that may be played on (-1 on the macroboard)
+     */
+    public int getActiveBoards() {
+	return mActiveBoards;
+    }
 
-	return validMacroBoard;
+    /**
+     * The macroboard with 9 for full boards that are still marked 0. The array is kept up to date by the field and shared between calls: do not change it.
+     */
+    public int[][] getValidMacroBoard() {
+	return mValidMacroboard;
     }
 
     /* JIMS CODE */
@@ -106,6 +214,22 @@ public class Field {
 	}
     }
 
+    public void setRoundNr(final int roundNr) {
+	mRoundNr = roundNr;
+    }
+
+    public void setMoveNr(final int moveNr) {
+	mMoveNr = moveNr;
+    }
+
+    public int getRoundNr() {
+	return mRoundNr;
+    }
+
+    public int getMoveNr() {
+	return mMoveNr;
+    }
+
     /**
      * Initialise field from comma separated String
      * 
@@ -113,13 +237,13 @@ public class Field {
      *            :
      */
     public void parseFromString(String s) {
-	System.err.println("Move " + mMoveNr);
+	Log.debug("Move %d", mMoveNr);
 	s = s.replace(";", ",");
 	String[] r = s.split(",");
 	int counter = 0;
 	for (int y = 0; y < ROWS; y++) {
 	    for (int x = 0; x < COLS; x++) {
-		mBoard[x][y] = Integer.parseInt(r[counter]);
+		setCell(x, y, Integer.parseInt(r[counter]));
 		counter++;
 	    }
 	}
@@ -136,30 +260,88 @@ public class Field {
 	int counter = 0;
 	for (int y = 0; y < 3; y++) {
 	    for (int x = 0; x < 3; x++) {
-		mMacroboard[x][y] = Integer.parseInt(r[counter]);
+		setMacro(x, y, Integer.parseInt(r[counter]));
 		counter++;
 	    }
 	}
     }
 
+    /**
+     * Initialise field from the bytes of a comma separated list, without making Strings
+     * 
+     * @param data
+     * @param from
+     *            : first byte of the list
+     * @param to
+     *            : end of the list (exclusive)
+     */
+    public void parseFromBytes(final byte[] data, final int from, final int to) {
+	Log.debug("Move %d", mMoveNr);
+	int start = from;
+	int counter = 0;
+	for (int i = from; i <= to && counter < COLS * ROWS; i++) {
+	    if (i == to || data[i] == ',' || data[i] == ';') {
+		setCell(counter % COLS, counter / COLS, ProtocolReader.parseInt(data, start, i));
+		counter++;
+		start = i + 1;
+	    }
+	}
+    }
+
+    /**
+     * Initialise macroboard from the bytes of a comma separated list, without making Strings
+     */
+    public void parseMacroboardFromBytes(final byte[] data, final int from, final int to) {
+	int start = from;
+	int counter = 0;
+	for (int i = from; i <= to && counter < 9; i++) {
+	    if (i == to || data[i] == ',') {
+		setMacro(counter % 3, counter / 3, ProtocolReader.parseInt(data, start, i));
+		counter++;
+		start = i + 1;
+	    }
+	}
+    }
+
+    /**
+     * Set the field and macroboard to what the engine would send for position: the winner of a board, -1 for the boards the player to move may play on, 0 for the
+     * others
+     */
+    public void setFromPosition(final Position position) {
+	for (int y = 0; y < ROWS; y++) {
+	    for (int x = 0; x < COLS; x++) {
+		setCell(x, y, position.getPlayerId(x, y));
+	    }
+	}
+	for (int b = 0; b < Position.NR_BOARDS; b++) {
+	    setMacro(b % 3, b / 3, position.getMacroboardValue(b));
+	}
+    }
+
     public void clearBoard() {
 	for (int x = 0; x < COLS; x++) {
 	    for (int y = 0; y < ROWS; y++) {
-		mBoard[x][y] = 0;
+		setCell(x, y, 0);
 	    }
 	}
     }
 
+    /**
+     * The boards that may be played on. The list is only made again when they change (the old one is left alone, it may still be waiting in the log), do not change
+     * it.
+     */
     public List<Move> getActiveMicroBoards() {
-	final ArrayList<Move> boards = new ArrayList<Move>();
-	for (int y = 0; y < 3; y++) {
-	    for (int x = 0; x < 3; x++) {
-		if (mMacroboard[x][y] == -1) {
-		    boards.add(new Move(x, y));
+	if (mActiveListBoards != mActiveBoards) {
+	    final ArrayList<Move> boards = new ArrayList<Move>();
+	    for (int board = 0; board < 9; board++) {
+		if ((mActiveBoards & (1 << board)) != 0) {
+		    boards.add(new Move(board % 3, board / 3));
 		}
 	    }
+	    mActiveList = Collections.unmodifiableList(boards);
+	    mActiveListBoards = mActiveBoards;
 	}
-	return boards;
+	return mActiveList;
     }
 
     /**
@@ -204,19 +386,20 @@ public class Field {
      * @return : String with player names for every cell, or 'empty' when cell is empty.
      */
     public String toString() {
-	String prettyStr = " ";
+	final StringBuilder prettyStr = new StringBuilder(COLS * ROWS * 3);
+	prettyStr.append(' ');
 	int counter = 0;
 	for (int y = 0; y < ROWS; y++) {
 	    for (int x = 0; x < COLS; x++) {
 		if (counter > 0) {
-		    prettyStr += ",";
+		    prettyStr.append(',');
 		}
-		prettyStr += mBoard[x][y];
+		prettyStr.append(mBoard[x][y]);
 		counter++;
 	    }
-	    prettyStr += '\n';
+	    prettyStr.append('\n');
 	}
-	return prettyStr;
+	return prettyStr.toString();
     }
 
     /**
@@ -264,4 +447,15 @@ public class Field {
     public int getPlayerId(final int column, final int row) {
 	return mBoard[column][row];
     }
+
+    /**
+     * Returns the macroboard value on given column and row: -1 for an active board, 0 for an inactive one, otherwise the id of the player that won it
+     * 
+     * @param args
+     *            : int column, int row
+     * @return : int
+     */
+    public int getMacroPlayerId(final int column, final int row) {
+	return mMacroboard[column][row];
+    }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package bot;
+
+/**
+ * GameRecord class
+ *
+ * One game as it is archived: the moves (one byte each, see {@link Position}) and a header with the result, the player that recorded it and the timings. Files of
+ * records are written by {@link GameRecordWriter} and read by {@link GameRecordReader}.
+ *
+ * File layout (big endian): MAGIC, then the records one after the other. A record is HEADER_SIZE bytes of header:
+ * <ul>
+ * <li>0: number of moves</li>
+ * <li>1: winner: 1, 2, Position.DRAW, or Position.NONE when the recorder did not see the end of the game</li>
+ * <li>2: id of the bot that recorded the game, 0 for a referee that saw both sides</li>
+ * <li>3: flags, FORFEIT when the game ended by a timeout or an illegal move</li>
+ * <li>4-11: start of the game, ms since the epoch</li>
+ * <li>12-19: ms of thinking of player 1 and of player 2 (int each), 0 when not measured</li>
+ * </ul>
+ * followed by the moves from the empty board on.
+ *
+ * @author stilkin
+ */
+public class GameRecord {
+    public static final long MAGIC = 0x5554545447414D45L; // "UTTTGAME"
+    public static final int FILE_HEADER_SIZE = 8;
+    public static final int HEADER_SIZE = 20;
+    public static final int MAX_SIZE = HEADER_SIZE + Position.NR_CELLS;
+    public static final int FORFEIT = 1;
+
+    private final byte[] mMoves = new byte[Position.NR_CELLS];
+    private int mLength;
+    private int mWinner;
+    private int mBotId;
+    private int mFlags;
+    private long mStartTime;
+    private final int[] mTimes = new int[3];
+
+    /**
+     * Start the record of a new game
+     *
+     * @param botId
+     *            player that records the game, 0 for both
+     * @param startTime
+     *            ms since the epoch
+     */
+    public void clear(final int botId, final long startTime) {
+	mLength = 0;
+	mWinner = Position.NONE;
+	mBotId = botId;
+	mFlags = 0;
+	mStartTime = startTime;
+	mTimes[1] = 0;
+	mTimes[2] = 0;
+    }
+
+    public void addMove(final int move) {
+	mMoves[mLength++] = (byte) move;
+    }
+
+    public void setWinner(final int winner) {
+	mWinner = winner;
+    }
+
+    public void setFlags(final int flags) {
+	mFlags = flags;
+    }
+
+    /**
+     * Count ms of thinking for player
+     */
+    public void addTime(final int player, final int ms) {
+	mTimes[player] += ms;
+    }
+
+    public int getLength() {
+	return mLength;
+    }
+
+    public int getMove(final int index) {
+	return mMoves[index];
+    }
+
+    /**
+     * Writes the record to buffer at offset
+     *
+     * @return the number of bytes written
+     */
+    int encode(final byte[] buffer, final int offset) {
+	buffer[offset] = (byte) mLength;
+	buffer[offset + 1] = (byte) mWinner;
+	buffer[offset + 2] = (byte) mBotId;
+	buffer[offset + 3] = (byte) mFlags;
+	putLong(buffer, offset + 4, mStartTime);
+	putInt(buffer, offset + 12, mTimes[1]);
+	putInt(buffer, offset + 16, mTimes[2]);
+	System.arraycopy(mMoves, 0, buffer, offset + HEADER_SIZE, mLength);
+	return HEADER_SIZE + mLength;
+    }
+
+    private static void putInt(final byte[] buffer, final int offset, final int value) {
+	buffer[offset] = (byte) (value >>> 24);
+	buffer[offset + 1] = (byte) (value >>> 16);
+	buffer[offset + 2] = (byte) (value >>> 8);
+	buffer[offset + 3] = (byte) value;
+    }
+
+    private static void putLong(final byte[] buffer, final int offset, final long value) {
+	putInt(buffer, offset, (int) (value >>> 32));
+	putInt(buffer, offset + 4, (int) value);
+    }
+}
@@ -0,0 +1,166 @@
+package bot;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * GameRecordReader class
+ *
+ * Reads a file of {@link GameRecord}s through a memory mapping, one record at a time and without copying: next() moves to the next game, the getters read its header
+ * and moves straight from the mapping. A truncated last record (a writer that was killed) ends the file. Mappings are limited to 2 GB, split larger archives.
+ *
+ * To replay a game, play its moves on a cleared Position:
+ *
+ * <pre>
+ * while (reader.next()) {
+ *     position.clear();
+ *     for (int i = 0; i &lt; reader.getMoveCount(); i++) {
+ * 	position.makeMove(reader.getMove(i));
+ * 	// use the position
+ *     }
+ * }
+ * </pre>
+ *
+ * Usage: java -cp bin bot.GameRecordReader FILE, to count the games and results and measure the replay speed.
+ *
+ * @author stilkin
+ */
+public class GameRecordReader {
+    private final MappedByteBuffer mBuffer;
+    private final int mSize;
+    private int mRecord = -1; // offset of the current record
+    private int mNext = GameRecord.FILE_HEADER_SIZE;
+
+    private GameRecordReader(final MappedByteBuffer buffer) {
+	mBuffer = buffer;
+	mSize = buffer.capacity();
+    }
+
+    /**
+     * Map a file of game records
+     *
+     * @throws IOException
+     *             when the file can not be read, is too large or is not a file of game records
+     */
+    public static GameRecordReader open(final String file) throws IOException {
+	final RandomAccessFile raf = new RandomAccessFile(file, "r");
+	try {
+	    final FileChannel channel = raf.getChannel();
+	    if (channel.size() > Integer.MAX_VALUE) {
+		throw new IOException("Too large to map, split it: " + file);
+	    }
+	    final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	    if (buffer.capacity() < GameRecord.FILE_HEADER_SIZE || buffer.getLong(0) != GameRecord.MAGIC) {
+		throw new IOException("Not a file of game records: " + file);
+	    }
+	    return new GameRecordReader(buffer);
+	} finally {
+	    raf.close(); // the mapping stays valid
+	}
+    }
+
+    /**
+     * Move to the next game
+     *
+     * @return false at the end of the file
+     */
+    public boolean next() {
+	if (mNext + GameRecord.HEADER_SIZE > mSize) {
+	    return false;
+	}
+	final int length = mBuffer.get(mNext) & 0xFF;
+	if (length > Position.NR_CELLS || mNext + GameRecord.HEADER_SIZE + length > mSize) {
+	    return false;
+	}
+	mRecord = mNext;
+	mNext += GameRecord.HEADER_SIZE + length;
+	return true;
+    }
+
+    /**
+     * Go back to before the first game
+     */
+    public void rewind() {
+	mRecord = -1;
+	mNext = GameRecord.FILE_HEADER_SIZE;
+    }
+
+    public int getMoveCount() {
+	return mBuffer.get(mRecord) & 0xFF;
+    }
+
+    /**
+     * Returns the winner: 1, 2, Position.DRAW, or Position.NONE when the recorder did not see the end of the game
+     */
+    public int getWinner() {
+	return mBuffer.get(mRecord + 1);
+    }
+
+    /**
+     * Returns the id of the bot that recorded the game, 0 for a referee
+     */
+    public int getBotId() {
+	return mBuffer.get(mRecord + 2);
+    }
+
+    public int getFlags() {
+	return mBuffer.get(mRecord + 3) & 0xFF;
+    }
+
+    /**
+     * Returns the start of the game, ms since the epoch
+     */
+    public long getStartTime() {
+	return mBuffer.getLong(mRecord + 4);
+    }
+
+    /**
+     * Returns the ms of thinking of player, 0 when not measured
+     */
+    public int getTime(final int player) {
+	return mBuffer.getInt(mRecord + 8 + 4 * player);
+    }
+
+    public int getMove(final int index) {
+	return mBuffer.get(mRecord + GameRecord.HEADER_SIZE + index);
+    }
+
+    /**
+     * Set position to the game after its first plies moves
+     */
+    public void replay(final Position position, final int plies) {
+	position.clear();
+	for (int i = 0; i < plies; i++) {
+	    position.makeMove(getMove(i));
+	}
+    }
+
+    public static void main(final String[] args) throws IOException {
+	if (args.length != 1) {
+	    System.err.println("Usage: java -cp bin bot.GameRecordReader FILE");
+	    return;
+	}
+	final GameRecordReader reader = open(args[0]);
+	final Position position = new Position();
+	final int[] winners = new int[4];
+	long games = 0, positions = 0, checksum = 0;
+	final long start = System.nanoTime();
+	while (reader.next()) {
+	    games++;
+	    winners[reader.getWinner()]++;
+	    position.clear();
+	    final int length = reader.getMoveCount();
+	    for (int i = 0; i < length; i++) {
+		position.makeMove(reader.getMove(i));
+		checksum ^= position.getHash();
+	    }
+	    positions += length;
+	}
+	final double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+	System.out.println(String.format("%d games, %d positions: player 1 won %d, player 2 won %d, %d draws, %d not seen to the end", games, positions, winners[1],
+		winners[2], winners[Position.DRAW], winners[Position.NONE]));
+	System.out.println(String.format("Replayed in %.3f s, %.1f million positions per second (checksum %x)", seconds, positions / seconds / 1e6, checksum));
+    }
+}
@@ -0,0 +1,60 @@
+package bot;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * GameRecordWriter class
+ *
+ * Appends {@link GameRecord}s to a file, each with one write of at most 101 bytes. Any number of bots and threads can share a writer.
+ *
+ * @author stilkin
+ */
+public class GameRecordWriter {
+    private final FileOutputStream mOut;
+    private final byte[] mBuffer = new byte[GameRecord.MAX_SIZE];
+
+    private GameRecordWriter(final FileOutputStream out) {
+	mOut = out;
+    }
+
+    /**
+     * Open file to add games to, a new file is created
+     *
+     * @throws IOException
+     *             when the file can not be written or is not a file of game records
+     */
+    public static GameRecordWriter open(final String file) throws IOException {
+	final File path = new File(file);
+	if (path.length() > 0) {
+	    final DataInputStream in = new DataInputStream(new FileInputStream(path));
+	    try {
+		if (path.length() < GameRecord.FILE_HEADER_SIZE || in.readLong() != GameRecord.MAGIC) {
+		    throw new IOException("Not a file of game records: " + file);
+		}
+	    } finally {
+		in.close();
+	    }
+	}
+	final FileOutputStream out = new FileOutputStream(path, true);
+	if (path.length() == 0) {
+	    final byte[] header = new byte[GameRecord.FILE_HEADER_SIZE];
+	    for (int i = 0; i < header.length; i++) {
+		header[i] = (byte) (GameRecord.MAGIC >>> (56 - 8 * i));
+	    }
+	    out.write(header);
+	}
+	return new GameRecordWriter(out);
+    }
+
+    public synchronized void write(final GameRecord record) throws IOException {
+	mOut.write(mBuffer, 0, record.encode(mBuffer, 0));
+    }
+
+    public synchronized void close() throws IOException {
+	mOut.close();
+    }
+}
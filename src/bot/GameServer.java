@@ -0,0 +1,150 @@
+package bot;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GameServer class
+ *
+ * Plays many games at once in one warmed up JVM. Every TCP connection is one game in the text protocol of the competition server (the connection carries what the
+ * engine would write to the stdin of the bot, and the answers of its stdout), with a {@link BotParser} and a {@link BotStarter} of its own. A game runs on a virtual
+ * thread when the JVM has them (Java 21 and later), else on a thread of a cached pool.
+ *
+ * The bots share one set of transposition tables, opening book, evaluation weights and stats file. Searching is CPU bound, so only as many moves as there are
+ * workers (default one per core) are made at the same time: a move waits for a free worker, and the time it waited is taken off its time bank. Every worker has
+ * one engine, proof-number search and endgame solver, which a game borrows for its move, so their memory (an MCTS node pool above all) grows with the workers
+ * and not with the games. Pondering is off and every game searches on one thread. The server warms up once (--warmup) before it takes the first game, the games do not.
+ *
+ * Usage: java -cp bin bot.GameServer [--port=9000] [--workers=N|auto] [bot options]
+ *
+ * @author stilkin
+ */
+public class GameServer {
+    public static final int DEFAULT_PORT = 9000;
+
+    private int mPort = DEFAULT_PORT;
+    private int mWorkers = Runtime.getRuntime().availableProcessors();
+    private final BotConfig mConfig = new BotConfig();
+
+    private final AtomicInteger mGames = new AtomicInteger();
+    private final AtomicInteger mRunning = new AtomicInteger();
+
+    public static void main(final String[] args) throws IOException {
+	final GameServer server = new GameServer();
+	for (final String arg : args) {
+	    final int eq = arg.indexOf('=');
+	    if (!arg.startsWith("--") || eq < 0) {
+		throw new IllegalArgumentException("Expected --name=value: " + arg);
+	    }
+	    server.set(arg.substring(2, eq), arg.substring(eq + 1));
+	}
+	Log.setLevel(server.mConfig.getLogLevel());
+	server.run();
+    }
+
+    /**
+     * Set a server option, anything else is an option of the bots
+     */
+    public void set(final String name, final String value) {
+	if (name.equals("port")) {
+	    mPort = Integer.parseInt(value);
+	} else if (name.equals("workers")) {
+	    mWorkers = value.equals("auto") ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(value);
+	    if (mWorkers < 1) {
+		throw new IllegalArgumentException("Need at least one worker: " + value);
+	    }
+	} else {
+	    mConfig.set(name, value);
+	}
+    }
+
+    /**
+     * Accept games until the process is stopped
+     */
+    public void run() throws IOException {
+	if (mConfig.getThreads() > 1) {
+	    throw new IllegalArgumentException("Every game searches on one thread, set the number of parallel searches with --workers");
+	}
+	mConfig.set("ponder", "false");
+	final int warmupMs = mConfig.getWarmupMs();
+	mConfig.set("warmup", "0"); // a game would warm up outside of the search slots, the server does it once for all
+	final BotStarter shared = new BotStarter(mConfig);
+	if (warmupMs > 0) {
+	    shared.warmUp(System.nanoTime() + warmupMs * 1000000L);
+	}
+	final BlockingQueue<BotStarter> searchers = new ArrayBlockingQueue<BotStarter>(mWorkers, true);
+	searchers.add(shared);
+	for (int w = 1; w < mWorkers; w++) {
+	    searchers.add(new BotStarter(shared));
+	}
+	final ExecutorService games = newGameExecutor();
+	final ServerSocket serverSocket = new ServerSocket(mPort);
+	Log.warn("Game server on port %d: %d workers, %s", serverSocket.getLocalPort(), mWorkers, mConfig.getEngine());
+	try {
+	    while (true) {
+		final Socket socket = serverSocket.accept();
+		games.execute(new Runnable() {
+		    @Override
+		    public void run() {
+			play(socket, shared, searchers);
+		    }
+		});
+	    }
+	} finally {
+	    serverSocket.close();
+	    games.shutdown();
+	    for (final BotStarter bot : searchers) {
+		bot.close(); // the ones that are not lent to a game
+	    }
+	}
+    }
+
+    private void play(final Socket socket, final BotStarter shared, final BlockingQueue<BotStarter> searchers) {
+	final int game = mGames.incrementAndGet();
+	Log.info("Game %d started, %d running", game, mRunning.incrementAndGet());
+	try {
+	    socket.setTcpNoDelay(true);
+	    final PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), true, "UTF-8");
+	    new BotParser(new BotStarter(shared, false), socket.getInputStream(), out, searchers).run();
+	} catch (final IOException e) {
+	    Log.warn("Game %d: %s", game, e);
+	} finally {
+	    try {
+		socket.close();
+	    } catch (final IOException e) {
+		// the game is over anyway
+	    }
+	    Log.info("Game %d ended, %d running", game, mRunning.decrementAndGet());
+	}
+    }
+
+    /**
+     * A thread per game: virtual when the JVM has them, else from a cached pool
+     */
+    private static ExecutorService newGameExecutor() {
+	try {
+	    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+	} catch (final ReflectiveOperationException e) {
+	    Log.info("No virtual threads, using platform threads");
+	    return Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger mCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+		    final Thread thread = new Thread(runnable, "game-" + mCount.incrementAndGet());
+		    thread.setDaemon(true);
+		    return thread;
+		}
+	    });
+	}
+    }
+}
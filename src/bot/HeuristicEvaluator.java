@@ -0,0 +1,49 @@
+package bot;
+
+/**
+ * Hand written evaluation: boards won (weighted by their place on the macroboard), open lines on the macroboard and the {@link MicroTable} value of the boards that
+ * are still being played.
+ *
+ * @author stilkin
+ */
+public class HeuristicEvaluator implements Evaluator {
+    private static final int[] BOARD_WEIGHT = { 3, 2, 3, 2, 4, 2, 3, 2, 3 }; // corners, sides and center
+    private static final int WON_BOARD = 100;
+    private static final int MACRO_TWO = 300, MACRO_ONE = 30;
+    private static final int FREE_CHOICE = 20;
+
+    @Override
+    public int evaluate(final Position position) {
+	int score = evaluateFor(position, 1) - evaluateFor(position, 2);
+	final int decided = position.getDecidedBoards();
+	for (int b = 0; b < Position.NR_BOARDS; b++) {
+	    if ((decided & (1 << b)) == 0) {
+		score += BOARD_WEIGHT[b] * MicroTable.getValue(MicroTable.code(position.getBoardMask(1, b), position.getBoardMask(2, b)));
+	    }
+	}
+	return (position.getSide() == 1) ? score : -score;
+    }
+
+    private int evaluateFor(final Position position, final int player) {
+	final int opponent = 3 - player;
+	final int won = position.getWonBoards(player);
+	final int blocked = position.getWonBoards(opponent) | position.getDrawnBoards();
+	int score = 0;
+
+	// lines on the macroboard that the opponent can not take anymore
+	final int openLines = ~TTTLookup.LINES_WITH[1][blocked];
+	score += MACRO_TWO * Integer.bitCount(TTTLookup.LINES_WITH[2][won] & openLines);
+	score += MACRO_ONE * Integer.bitCount(TTTLookup.LINES_WITH[1][won] & openLines);
+
+	for (int b = 0; b < Position.NR_BOARDS; b++) {
+	    if ((won & (1 << b)) != 0) {
+		score += WON_BOARD * BOARD_WEIGHT[b];
+	    }
+	}
+
+	if (position.getSide() == player && position.getForcedBoard() == Position.FREE) {
+	    score += FREE_CHOICE;
+	}
+	return score;
+    }
+}
@@ -0,0 +1,368 @@
+package bot;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LocalEngine class
+ *
+ * A stand-in for the competition engine: starts both bots as new processes for every game and talks to them over stdin/stdout with exactly the text protocol of the
+ * server (settings, update game round/move/field/macroboard, action move). It keeps the time banks like the server does and measures every move from the moment
+ * "action move" is written until "place_move" comes back, so start-up time, JIT warm-up and GC pauses of the real process all count.
+ *
+ * A bot that answers too late, answers something else than a legal place_move or dies loses the game.
+ *
+ * Usage: java -cp bin bot.LocalEngine [--bot1="java -cp bin bot.BotStarter --engine=mcts"] [--bot2=...] [--name=value ...]
+ *
+ * @author stilkin
+ */
+public class LocalEngine {
+    private static final long GRACE_MS = 5000; // wait this long for a bot that is already out of time, to see what it does
+    private static final long EXIT_WAIT_MS = 2000;
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99 };
+
+    private final String[] mCommands = new String[3];
+    private int mGames = 2;
+    private int mTimebank = 10000;
+    private int mTimePerMove = 500;
+    private int mOpening = 0;
+    private long mSeed = System.nanoTime();
+    private boolean mShowStderr = false;
+    private boolean mVerbose = false;
+    private String mCsvFile = null;
+
+    // per bot command (1 and 2): latencies in ns of all moves, the first moves of the games separately
+    private final List<List<Long>> mLatencies = new ArrayList<List<Long>>();
+    private final List<List<Long>> mFirstLatencies = new ArrayList<List<Long>>();
+    private final int[] mWins = new int[3];
+    private final int[] mTimeouts = new int[3];
+    private final int[] mIllegal = new int[3];
+    private int mDraws = 0;
+    private PrintWriter mCsv;
+
+    public LocalEngine() {
+	final String java = System.getProperty("java.home") + "/bin/java";
+	mCommands[1] = java + " -cp " + System.getProperty("java.class.path") + " bot.BotStarter";
+	mCommands[2] = mCommands[1];
+	for (int i = 0; i < 3; i++) {
+	    mLatencies.add(new ArrayList<Long>());
+	    mFirstLatencies.add(new ArrayList<Long>());
+	}
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+	final LocalEngine engine = new LocalEngine();
+	for (final String arg : args) {
+	    final int eq = arg.indexOf('=');
+	    if (!arg.startsWith("--") || eq < 0) {
+		throw new IllegalArgumentException("Expected --name=value: " + arg);
+	    }
+	    engine.set(arg.substring(2, eq), arg.substring(eq + 1));
+	}
+	engine.run();
+	System.out.println(engine.getReport());
+    }
+
+    public void set(final String name, final String value) {
+	if (name.equals("bot1")) {
+	    mCommands[1] = value;
+	} else if (name.equals("bot2")) {
+	    mCommands[2] = value;
+	} else if (name.equals("games")) {
+	    mGames = Integer.parseInt(value);
+	} else if (name.equals("timebank")) {
+	    mTimebank = Integer.parseInt(value);
+	} else if (name.equals("time_per_move")) {
+	    mTimePerMove = Integer.parseInt(value);
+	} else if (name.equals("opening")) {
+	    mOpening = Integer.parseInt(value);
+	} else if (name.equals("seed")) {
+	    mSeed = Long.parseLong(value);
+	} else if (name.equals("stderr")) {
+	    mShowStderr = Boolean.parseBoolean(value);
+	} else if (name.equals("verbose")) {
+	    mVerbose = Boolean.parseBoolean(value);
+	} else if (name.equals("csv")) {
+	    mCsvFile = value;
+	} else {
+	    throw new IllegalArgumentException("Unknown option: " + name);
+	}
+    }
+
+    /**
+     * Play all games, the bots switch seats every game
+     */
+    public void run() throws IOException, InterruptedException {
+	if (mCsvFile != null) {
+	    mCsv = new PrintWriter(new FileWriter(mCsvFile));
+	    mCsv.println("game,bot,player,move,latency_ms,time_left_ms");
+	}
+	try {
+	    for (int game = 0; game < mGames; game++) {
+		final int first = (game % 2 == 0) ? 1 : 2; // the bot command that plays as player 1
+		final int winner = playGame(game, first);
+		final String result = (winner == Position.DRAW) ? "draw" : ("bot" + ((winner == 1) ? first : 3 - first) + " wins");
+		System.out.println("Game " + (game + 1) + ": bot" + first + " starts, " + result);
+	    }
+	} finally {
+	    if (mCsv != null) {
+		mCsv.close();
+	    }
+	}
+    }
+
+    /**
+     * @return the winning player (not the bot command), or Position.DRAW
+     */
+    private int playGame(final int game, final int first) throws IOException, InterruptedException {
+	final BotProcess[] players = new BotProcess[3];
+	final int[] botOf = { 0, first, 3 - first };
+	final int[] timeLeft = { 0, mTimebank, mTimebank };
+	final int[] movesMade = new int[3];
+	final Position position = new Position();
+	final int[] moves = new int[Position.NR_CELLS];
+
+	final FastRandom random = new FastRandom(mSeed + game / 2);
+	for (int ply = 0; ply < mOpening && !position.isGameOver(); ply++) {
+	    final int nrMoves = position.generateMoves(moves);
+	    position.makeMove(moves[random.nextInt(nrMoves)]);
+	}
+
+	try {
+	    for (int id = 1; id <= 2; id++) {
+		players[id] = new BotProcess(mCommands[botOf[id]], "bot" + botOf[id]);
+		players[id].send("settings timebank " + mTimebank);
+		players[id].send("settings time_per_move " + mTimePerMove);
+		players[id].send("settings player_names player1,player2");
+		players[id].send("settings your_bot player" + id);
+		players[id].send("settings your_botid " + id);
+	    }
+
+	    int moveNr = mOpening;
+	    while (!position.isGameOver()) {
+		final int side = position.getSide();
+		final BotProcess player = players[side];
+		moveNr++;
+		long start = System.nanoTime();
+		String answer;
+		try {
+		    player.send("update game round " + ((moveNr + 1) / 2));
+		    player.send("update game move " + moveNr);
+		    player.send("update game field " + position.toFieldString());
+		    player.send("update game macroboard " + position.toMacroboardString());
+		    start = System.nanoTime();
+		    player.send("action move " + timeLeft[side]);
+		    answer = player.poll(timeLeft[side] + GRACE_MS);
+		} catch (final IOException e) {
+		    answer = null; // the bot died
+		}
+		final long latency = System.nanoTime() - start;
+		final int latencyMs = (int) (latency / 1000000L);
+		timeLeft[side] -= latencyMs;
+		record(game, botOf[side], side, movesMade[side]++, latency, timeLeft[side]);
+
+		if (answer == null || timeLeft[side] < 0) {
+		    System.out.println("bot" + botOf[side] + " timed out after " + latencyMs + " ms (" + (answer == null ? "no answer" : answer) + ")");
+		    mTimeouts[botOf[side]]++;
+		    return finish(3 - side, botOf);
+		}
+		final int move = parseMove(answer, position, moves);
+		if (move < 0) {
+		    System.out.println("bot" + botOf[side] + " made an illegal move: " + answer);
+		    mIllegal[botOf[side]]++;
+		    return finish(3 - side, botOf);
+		}
+		position.makeMove(move);
+		timeLeft[side] = Math.min(mTimebank, timeLeft[side] + mTimePerMove);
+	    }
+	    return finish(position.getWinner(), botOf);
+	} finally {
+	    for (int id = 1; id <= 2; id++) {
+		if (players[id] != null) {
+		    players[id].close();
+		}
+	    }
+	}
+    }
+
+    private int finish(final int winner, final int[] botOf) {
+	if (winner == Position.DRAW) {
+	    mDraws++;
+	} else {
+	    mWins[botOf[winner]]++;
+	}
+	return winner;
+    }
+
+    private void record(final int game, final int bot, final int player, final int move, final long latency, final int timeLeft) {
+	mLatencies.get(bot).add(latency);
+	if (move == 0) {
+	    mFirstLatencies.get(bot).add(latency);
+	}
+	if (mVerbose) {
+	    System.out.println(String.format("game %d bot%d move %d: %.1f ms, %d ms left", game + 1, bot, move + 1, latency / 1e6, timeLeft));
+	}
+	if (mCsv != null) {
+	    mCsv.println(String.format("%d,%d,%d,%d,%.3f,%d", game + 1, bot, player, move + 1, latency / 1e6, timeLeft));
+	}
+    }
+
+    /**
+     * Returns the move of a "place_move x y" answer, -1 when it is not that or not legal
+     */
+    private static int parseMove(final String answer, final Position position, final int[] moves) {
+	final String[] parts = answer.trim().split(" ");
+	if (parts.length != 3 || !parts[0].equals("place_move")) {
+	    return -1;
+	}
+	final int x, y;
+	try {
+	    x = Integer.parseInt(parts[1]);
+	    y = Integer.parseInt(parts[2]);
+	} catch (final NumberFormatException e) {
+	    return -1;
+	}
+	if (x < 0 || x > 8 || y < 0 || y > 8) {
+	    return -1;
+	}
+	final int move = Position.toMove(x, y);
+	final int nrMoves = position.generateMoves(moves);
+	for (int i = 0; i < nrMoves; i++) {
+	    if (moves[i] == move) {
+		return move;
+	    }
+	}
+	return -1;
+    }
+
+    public String getReport() {
+	final StringBuilder report = new StringBuilder();
+	report.append(String.format("%d games: bot1 %d wins, bot2 %d wins, %d draws%n", mGames, mWins[1], mWins[2], mDraws));
+	for (int bot = 1; bot <= 2; bot++) {
+	    final long[] all = toSortedArray(mLatencies.get(bot));
+	    final long[] firsts = toSortedArray(mFirstLatencies.get(bot));
+	    report.append(String.format("bot%d [%s]%n", bot, mCommands[bot]));
+	    report.append(String.format("  %d moves, %d timeouts, %d illegal%n", all.length, mTimeouts[bot], mIllegal[bot]));
+	    if (all.length > 0) {
+		report.append(String.format("  latency ms: mean %.1f", mean(all) / 1e6));
+		for (final double p : PERCENTILES) {
+		    report.append(String.format(", p%.0f %.1f", 100 * p, percentile(all, p) / 1e6));
+		}
+		report.append(String.format(", max %.1f%n", all[all.length - 1] / 1e6));
+		report.append(String.format("  first move ms: mean %.1f, max %.1f%n", mean(firsts) / 1e6, firsts[firsts.length - 1] / 1e6));
+	    }
+	}
+	return report.toString();
+    }
+
+    private static long[] toSortedArray(final List<Long> values) {
+	final long[] array = new long[values.size()];
+	for (int i = 0; i < array.length; i++) {
+	    array[i] = values.get(i);
+	}
+	Arrays.sort(array);
+	return array;
+    }
+
+    private static double mean(final long[] values) {
+	double sum = 0;
+	for (final long value : values) {
+	    sum += value;
+	}
+	return sum / Math.max(1, values.length);
+    }
+
+    private static long percentile(final long[] sorted, final double p) {
+	return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+
+    /**
+     * One bot process: what it prints on stdout is collected line by line on a reader thread, so the engine can wait for an answer with a time limit
+     */
+    private class BotProcess {
+	private final Process mProcess;
+	private final BufferedWriter mIn;
+	private final BlockingQueue<String> mLines = new LinkedBlockingQueue<String>();
+
+	BotProcess(final String command, final String name) throws IOException {
+	    final ProcessBuilder builder = new ProcessBuilder(command.trim().split("\\s+"));
+	    mProcess = builder.start();
+	    mIn = new BufferedWriter(new OutputStreamWriter(mProcess.getOutputStream(), StandardCharsets.US_ASCII));
+	    startReader(mProcess.getInputStream(), name + "-out", true);
+	    startReader(mProcess.getErrorStream(), name + "-err", false);
+	}
+
+	private void startReader(final InputStream stream, final String name, final boolean collect) {
+	    final Thread reader = new Thread(new Runnable() {
+		@Override
+		public void run() {
+		    try {
+			final BufferedReader lines = new BufferedReader(new InputStreamReader(stream, StandardCharsets.US_ASCII));
+			String line;
+			while ((line = lines.readLine()) != null) {
+			    if (collect) {
+				mLines.add(line);
+			    } else if (mShowStderr) {
+				System.err.println(name + ": " + line);
+			    }
+			}
+		    } catch (final IOException e) {
+			// the process is gone
+		    }
+		}
+	    }, name);
+	    reader.setDaemon(true);
+	    reader.start();
+	}
+
+	void send(final String line) throws IOException {
+	    mIn.write(line);
+	    mIn.write('\n');
+	    mIn.flush();
+	}
+
+	/**
+	 * Wait for the next line of the bot
+	 *
+	 * @return null when nothing came within timeout ms
+	 */
+	String poll(final long timeout) throws InterruptedException {
+	    return mLines.poll(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+	}
+
+	void close() throws InterruptedException {
+	    try {
+		mIn.close();
+	    } catch (final IOException e) {
+		// already gone
+	    }
+	    final long end = System.currentTimeMillis() + EXIT_WAIT_MS;
+	    while (isAlive() && System.currentTimeMillis() < end) {
+		Thread.sleep(10);
+	    }
+	    mProcess.destroy();
+	}
+
+	private boolean isAlive() {
+	    try {
+		mProcess.exitValue();
+		return false;
+	    } catch (final IllegalThreadStateException e) {
+		return true;
+	    }
+	}
+    }
+}
@@ -0,0 +1,278 @@
+package bot;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log class
+ *
+ * Logging that stays off the move hot path. A message is stored as its format string and arguments in a lock-free ring buffer, a background thread formats it and
+ * writes it to stderr. Messages below the current level are dropped before anything is formatted, and when the buffer is full messages are dropped (and counted)
+ * instead of blocking the caller. The background thread sleeps while the buffer is empty, the next message wakes it.
+ *
+ * Arguments are formatted later on the log thread, so they must not change after the call: pass numbers, strings or objects that are not modified anymore, and
+ * build the string yourself (behind isEnabled) for anything else.
+ *
+ * @author stilkin
+ */
+public final class Log {
+    public static final int OFF = -1, ERROR = 0, WARN = 1, INFO = 2, DEBUG = 3;
+    private static final String[] LEVEL_NAMES = { "error", "warn", "info", "debug" };
+    private static final int CAPACITY = 1 << 12;
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_ARGS = 6;
+
+    private static volatile int sLevel = INFO;
+    private static volatile PrintStream sOut = System.err;
+
+    // slot i may be written by a producer when sequence[i] == position, and read by the consumer when sequence[i] == position + 1
+    private static final AtomicLongArray SEQUENCE = new AtomicLongArray(CAPACITY);
+    private static final String[] FORMATS = new String[CAPACITY];
+    private static final Object[] ARGS = new Object[CAPACITY * MAX_ARGS];
+    private static final byte[] ARG_COUNTS = new byte[CAPACITY];
+    private static final AtomicLong TAIL = new AtomicLong();
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static long sHead = 0; // only used by the log thread (and flush, which holds the lock)
+    private static final Object DRAIN_LOCK = new Object();
+    private static final Thread WRITER;
+    private static volatile boolean sIdle = false; // the log thread is parked, or about to be, until a message is published
+
+    static {
+	for (int i = 0; i < CAPACITY; i++) {
+	    SEQUENCE.set(i, i);
+	}
+	WRITER = new Thread(new Runnable() {
+	    @Override
+	    public void run() {
+		while (true) {
+		    if (!drain()) {
+			// a producer publishes and then reads sIdle, we set sIdle and then look again: one of the two sees the other
+			sIdle = true;
+			if (!isPending()) {
+			    LockSupport.park();
+			}
+			sIdle = false;
+		    }
+		}
+	    }
+	}, "log");
+	WRITER.setDaemon(true);
+	WRITER.start();
+	Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+	    @Override
+	    public void run() {
+		flush();
+	    }
+	}, "log-flush"));
+    }
+
+    private Log() {}
+
+    public static void setLevel(final int level) {
+	sLevel = level;
+    }
+
+    /**
+     * Parse a level name (error, warn, info, debug or off)
+     */
+    public static int parseLevel(final String name) {
+	if (name.equals("off")) {
+	    return OFF;
+	}
+	for (int level = 0; level < LEVEL_NAMES.length; level++) {
+	    if (LEVEL_NAMES[level].equals(name)) {
+		return level;
+	    }
+	}
+	throw new IllegalArgumentException("Unknown log level: " + name);
+    }
+
+    /**
+     * Send the log somewhere else than stderr
+     */
+    public static void setOutput(final PrintStream out) {
+	sOut = out;
+    }
+
+    public static boolean isEnabled(final int level) {
+	return level <= sLevel;
+    }
+
+    public static boolean isDebug() {
+	return DEBUG <= sLevel;
+    }
+
+    public static void error(final String format, final Object... args) {
+	if (ERROR <= sLevel) {
+	    offer(format, args);
+	}
+    }
+
+    public static void warn(final String format, final Object... args) {
+	if (WARN <= sLevel) {
+	    offer(format, args);
+	}
+    }
+
+    public static void info(final String message) {
+	if (INFO <= sLevel) {
+	    offer(message, 0, null, null, null, null, null, null);
+	}
+    }
+
+    public static void info(final String format, final Object a) {
+	if (INFO <= sLevel) {
+	    offer(format, 1, a, null, null, null, null, null);
+	}
+    }
+
+    public static void info(final String format, final Object a, final Object b) {
+	if (INFO <= sLevel) {
+	    offer(format, 2, a, b, null, null, null, null);
+	}
+    }
+
+    public static void info(final String format, final Object a, final Object b, final Object c) {
+	if (INFO <= sLevel) {
+	    offer(format, 3, a, b, c, null, null, null);
+	}
+    }
+
+    public static void info(final String format, final Object a, final Object b, final Object c, final Object d) {
+	if (INFO <= sLevel) {
+	    offer(format, 4, a, b, c, d, null, null);
+	}
+    }
+
+    public static void info(final String format, final Object... args) {
+	if (INFO <= sLevel) {
+	    offer(format, args);
+	}
+    }
+
+    public static void debug(final String message) {
+	if (DEBUG <= sLevel) {
+	    offer(message, 0, null, null, null, null, null, null);
+	}
+    }
+
+    public static void debug(final String format, final Object a) {
+	if (DEBUG <= sLevel) {
+	    offer(format, 1, a, null, null, null, null, null);
+	}
+    }
+
+    public static void debug(final String format, final Object a, final Object b) {
+	if (DEBUG <= sLevel) {
+	    offer(format, 2, a, b, null, null, null, null);
+	}
+    }
+
+    public static void debug(final String format, final Object a, final Object b, final Object c) {
+	if (DEBUG <= sLevel) {
+	    offer(format, 3, a, b, c, null, null, null);
+	}
+    }
+
+    private static void offer(final String format, final Object[] args) {
+	final int n = args.length;
+	offer(format, n, n > 0 ? args[0] : null, n > 1 ? args[1] : null, n > 2 ? args[2] : null, n > 3 ? args[3] : null, n > 4 ? args[4] : null, n > 5 ? args[5] : null);
+    }
+
+    /**
+     * Claim a slot, fill it and publish it. Never blocks: when the buffer is full the message is dropped.
+     */
+    private static void offer(final String format, final int nrArgs, final Object a, final Object b, final Object c, final Object d, final Object e, final Object f) {
+	long position = TAIL.get();
+	while (true) {
+	    final int slot = (int) position & MASK;
+	    final long diff = SEQUENCE.get(slot) - position;
+	    if (diff == 0) {
+		if (TAIL.compareAndSet(position, position + 1)) {
+		    break;
+		}
+		position = TAIL.get();
+	    } else if (diff < 0) {
+		DROPPED.incrementAndGet();
+		return;
+	    } else {
+		position = TAIL.get();
+	    }
+	}
+	final int slot = (int) position & MASK;
+	FORMATS[slot] = format;
+	ARG_COUNTS[slot] = (byte) Math.min(nrArgs, MAX_ARGS);
+	ARGS[slot * MAX_ARGS] = a;
+	ARGS[slot * MAX_ARGS + 1] = b;
+	ARGS[slot * MAX_ARGS + 2] = c;
+	ARGS[slot * MAX_ARGS + 3] = d;
+	ARGS[slot * MAX_ARGS + 4] = e;
+	ARGS[slot * MAX_ARGS + 5] = f;
+	SEQUENCE.set(slot, position + 1);
+	if (sIdle) {
+	    LockSupport.unpark(WRITER);
+	}
+    }
+
+    private static boolean isPending() {
+	synchronized (DRAIN_LOCK) {
+	    return SEQUENCE.get((int) sHead & MASK) == sHead + 1;
+	}
+    }
+
+    /**
+     * Write everything that is in the buffer
+     *
+     * @return false when there was nothing to write
+     */
+    private static boolean drain() {
+	synchronized (DRAIN_LOCK) {
+	    final PrintStream out = sOut;
+	    boolean wrote = false;
+	    while (true) {
+		final int slot = (int) sHead & MASK;
+		if (SEQUENCE.get(slot) != sHead + 1) {
+		    break;
+		}
+		final String message = format(slot);
+		FORMATS[slot] = null;
+		for (int i = 0; i < MAX_ARGS; i++) {
+		    ARGS[slot * MAX_ARGS + i] = null;
+		}
+		SEQUENCE.set(slot, sHead + CAPACITY);
+		sHead++;
+		out.println(message);
+		wrote = true;
+	    }
+	    final long dropped = DROPPED.getAndSet(0);
+	    if (dropped > 0) {
+		out.println("log: " + dropped + " messages dropped");
+	    }
+	    return wrote;
+	}
+    }
+
+    private static String format(final int slot) {
+	final int nrArgs = ARG_COUNTS[slot];
+	if (nrArgs == 0) {
+	    return FORMATS[slot];
+	}
+	final Object[] args = new Object[nrArgs];
+	System.arraycopy(ARGS, slot * MAX_ARGS, args, 0, nrArgs);
+	try {
+	    return String.format(FORMATS[slot], args);
+	} catch (final RuntimeException e) {
+	    return FORMATS[slot] + " (" + e + ")";
+	}
+    }
+
+    /**
+     * Write all pending messages now, on the calling thread
+     */
+    public static void flush() {
+	drain();
+	sOut.flush();
+    }
+}
@@ -0,0 +1,296 @@
+package bot;
+
+/**
+ * MctsSearch class
+ *
+ * Monte Carlo Tree Search with UCT selection and random playouts. The nodes live in parallel arrays that are allocated once, so searching creates no garbage. The
+ * children of a node are allocated next to each other: firstChild .. firstChild + childCount - 1. When the pool is full the tree stops growing and the remaining time
+ * is spent on playouts from the existing leaves.
+ *
+ * The tree is kept between searches: when the new position is found one or two plies below the old root (after a ponder search or after our own move and the reply),
+ * that node becomes the root and its statistics are reused.
+ *
+ * @author stilkin
+ */
+public class MctsSearch implements SearchEngine {
+    public static final int DEFAULT_NODES = 1 << 21;
+    private static final float EXPLORATION = 1.0f;
+    private static final int TIME_CHECK_INTERVAL = 63; // playouts between two looks at the clock
+    private static final int REUSE_LIMIT = 4; // only reuse a tree while less than 3/4 of the pool is in use
+
+    private final int mCapacity;
+    private final int[] mFirstChild; // 0: not expanded (the root is never a child)
+    private final byte[] mChildCount;
+    private final byte[] mMove;
+    private final int[] mVisits;
+    private final float[] mWins; // for the player that made the move into the node, a draw counts half
+
+    private int mSize = 0;
+    private int mRootNode = 0;
+    private final Position mRoot = new Position();
+    private final Position mPosition = new Position();
+    private final int[] mMoves = new int[Position.NR_CELLS];
+    private final int[] mPath = new int[AlphaBetaSearch.MAX_PLY];
+    private final FastRandom mRandom = new FastRandom(System.nanoTime());
+
+    private volatile boolean mStopped;
+    private long mPlayouts;
+    private int mScore;
+    private int mDepth;
+
+    public MctsSearch() {
+	this(DEFAULT_NODES);
+    }
+
+    public MctsSearch(final int capacity) {
+	mCapacity = capacity;
+	mFirstChild = new int[capacity];
+	mChildCount = new byte[capacity];
+	mMove = new byte[capacity];
+	mVisits = new int[capacity];
+	mWins = new float[capacity];
+    }
+
+    @Override
+    public int findMove(final Position position, final long deadline) {
+	final long start = System.nanoTime();
+	final int reused = findNode(position);
+	mRoot.copyFrom(position);
+	mStopped = false;
+	mPlayouts = 0;
+	mDepth = 0;
+	mScore = 0;
+	if (reused >= 0) {
+	    mRootNode = reused;
+	    Log.info("MCTS: reusing subtree with %d visits", mVisits[reused]);
+	} else {
+	    resetTree();
+	}
+
+	if (mFirstChild[mRootNode] == 0) {
+	    expand(mRootNode, mRoot);
+	}
+	final int nrChildren = mChildCount[mRootNode];
+	if (nrChildren == 0) {
+	    return -1;
+	}
+	if (nrChildren == 1) { // forced, no search; the statistics are those of the child so far
+	    final int only = mFirstChild[mRootNode];
+	    mScore = (int) (1000 * mWins[only] / Math.max(1, mVisits[only]));
+	    return mMove[only];
+	}
+
+	while (!mStopped) {
+	    if ((mPlayouts & TIME_CHECK_INTERVAL) == 0 && System.nanoTime() >= deadline) {
+		break;
+	    }
+	    iterate();
+	    mPlayouts++;
+	}
+
+	final int best = getMostVisitedChild(mRootNode);
+	mScore = (int) (1000 * mWins[best] / Math.max(1, mVisits[best]));
+	final long elapsed = Math.max(1, System.nanoTime() - start);
+	Log.info("MCTS: %d playouts (%d/s), %d nodes, depth %d", mPlayouts, mPlayouts * 1000000000L / elapsed, mSize, mDepth);
+	return mMove[best];
+    }
+
+    private void resetTree() {
+	mRootNode = 0;
+	mSize = 1;
+	mFirstChild[0] = 0;
+	mChildCount[0] = 0;
+	mVisits[0] = 0;
+	mWins[0] = 0;
+    }
+
+    /**
+     * Look for position in the tree, at most two plies below the old root
+     *
+     * @return the node, -1 when it is not there or the tree is too full to be worth keeping
+     */
+    private int findNode(final Position position) {
+	if (mSize == 0 || mSize > mCapacity - mCapacity / REUSE_LIMIT) {
+	    return -1;
+	}
+	final long hash = position.getHash();
+	final Position pos = mPosition;
+	pos.copyFrom(mRoot);
+	if (pos.getHash() == hash) {
+	    return mRootNode;
+	}
+	final int first = mFirstChild[mRootNode];
+	for (int c = first; first != 0 && c < first + mChildCount[mRootNode]; c++) {
+	    pos.makeMove(mMove[c]);
+	    if (pos.getHash() == hash) {
+		return c;
+	    }
+	    final int grandChild = mFirstChild[c];
+	    for (int g = grandChild; grandChild != 0 && g < grandChild + mChildCount[c]; g++) {
+		pos.makeMove(mMove[g]);
+		final boolean found = pos.getHash() == hash;
+		pos.unmakeMove();
+		if (found) {
+		    return g;
+		}
+	    }
+	    pos.unmakeMove();
+	}
+	return -1;
+    }
+
+    /**
+     * One selection, expansion, playout and backpropagation step
+     */
+    private void iterate() {
+	final Position pos = mPosition;
+	pos.copyFrom(mRoot);
+	int node = mRootNode;
+	int depth = 0;
+	mPath[0] = node;
+
+	// selection
+	while (mFirstChild[node] != 0) {
+	    node = selectChild(node);
+	    pos.makeMove(mMove[node]);
+	    mPath[++depth] = node;
+	}
+
+	// expansion, once a leaf has been visited before
+	if (!pos.isGameOver() && mVisits[node] > 0 && expand(node, pos)) {
+	    node = mFirstChild[node] + mRandom.nextInt(mChildCount[node]);
+	    pos.makeMove(mMove[node]);
+	    mPath[++depth] = node;
+	}
+	if (depth > mDepth) {
+	    mDepth = depth;
+	}
+
+	final int winner = playout(pos, mMoves, mRandom);
+
+	// backpropagation, the mover into the node at depth d is the root side for odd d
+	int mover = 3 - mRoot.getSide();
+	for (int d = 0; d <= depth; d++) {
+	    final int n = mPath[d];
+	    mVisits[n]++;
+	    if (winner == mover) {
+		mWins[n] += 1f;
+	    } else if (winner == Position.DRAW) {
+		mWins[n] += 0.5f;
+	    }
+	    mover = 3 - mover;
+	}
+    }
+
+    private int selectChild(final int node) {
+	final int first = mFirstChild[node];
+	final int last = first + mChildCount[node];
+	final float logParent = (float) Math.log(mVisits[node] + 1);
+	int best = first;
+	float bestValue = Float.NEGATIVE_INFINITY;
+	for (int c = first; c < last; c++) {
+	    final int visits = mVisits[c];
+	    if (visits == 0) {
+		return c;
+	    }
+	    final float value = mWins[c] / visits + EXPLORATION * (float) Math.sqrt(logParent / visits);
+	    if (value > bestValue) {
+		bestValue = value;
+		best = c;
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * Allocate the children of node, returns false when the pool is full
+     */
+    private boolean expand(final int node, final Position pos) {
+	final int nrMoves = pos.generateMoves(mMoves);
+	if (nrMoves == 0 || mSize + nrMoves > mCapacity) {
+	    return false;
+	}
+	final int first = mSize;
+	for (int i = 0; i < nrMoves; i++) {
+	    final int child = first + i;
+	    mFirstChild[child] = 0;
+	    mChildCount[child] = 0;
+	    mMove[child] = (byte) mMoves[i];
+	    mVisits[child] = 0;
+	    mWins[child] = 0;
+	}
+	mSize += nrMoves;
+	mChildCount[node] = (byte) nrMoves;
+	mFirstChild[node] = first;
+	return true;
+    }
+
+    private int getMostVisitedChild(final int node) {
+	final int first = mFirstChild[node];
+	int best = first;
+	for (int c = first + 1; c < first + mChildCount[node]; c++) {
+	    if (mVisits[c] > mVisits[best]) {
+		best = c;
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * Play random moves until the game is over
+     *
+     * @return the winner, or Position.DRAW
+     */
+    static int playout(final Position pos, final int[] moves, final FastRandom random) {
+	while (!pos.isGameOver()) {
+	    final int nrMoves = pos.generateMoves(moves);
+	    pos.makeMove(moves[random.nextInt(nrMoves)]);
+	}
+	return pos.getWinner();
+    }
+
+    @Override
+    public void stop() {
+	mStopped = true;
+    }
+
+    @Override
+    public void close() {
+	// single threaded, nothing to release
+    }
+
+    /**
+     * Returns the expected result of the chosen move in per mille, 1000 is a certain win
+     */
+    @Override
+    public int getScore() {
+	return mScore;
+    }
+
+    @Override
+    public int getDepth() {
+	return mDepth;
+    }
+
+    @Override
+    public long getNodeCount() {
+	return mPlayouts;
+    }
+
+    /**
+     * The most visited child of every node, from the root down
+     */
+    @Override
+    public int getPrincipalVariation(final int[] moves) {
+	int length = 0;
+	int node = mRootNode;
+	while (length < moves.length && mFirstChild[node] != 0) {
+	    node = getMostVisitedChild(node);
+	    if (mVisits[node] == 0) {
+		break;
+	    }
+	    moves[length++] = mMove[node];
+	}
+	return length;
+    }
+}
@@ -0,0 +1,259 @@
+package bot;
+
+/**
+ * MicroTable class
+ *
+ * Everything we want to know about a single microboard, for all 3^9 = 19683 states, built once when the class is loaded. A state is indexed by its base-3 code: cell
+ * c (bit c of the masks, see {@link TTTLookup}) contributes its player id times 3^c.
+ *
+ * Squares are 9-bit masks of empty cells. Codes that can not occur in a game (both players with three in a row) are in the table too, they are simply never asked
+ * for.
+ *
+ * @author stilkin
+ */
+public final class MicroTable {
+    public static final int STATES = 19683;
+    /** Value of a won board, for the heuristic */
+    public static final int WON_VALUE = 100;
+    private static final int TWO_VALUE = 8, ONE_VALUE = 1;
+
+    /** BASE3[mask]: code of a board with player 1 on mask */
+    private static final int[] BASE3 = new int[TTTLookup.SIZE];
+
+    // bits 0-8: win squares of player 1, 9-17: of player 2, 18-19: winner, 20: full, 21: dead, 22-23: two in line for player 1 / 2
+    private static final int[] INFO = new int[STATES];
+    // bits 0-8: threat squares of player 1, 9-17: of player 2
+    private static final int[] THREATS = new int[STATES];
+    // bits 0-8: squares that give player 1 its first two in line, 9-17: the same for player 2
+    private static final int[] TWO_SQUARES = new int[STATES];
+    // bits 0-8: fork squares of player 1, 9-17: of player 2
+    private static final int[] FORKS = new int[STATES];
+    // bits 0-8: squares on which player 1 takes away the forks of player 2, 9-17: the other way around
+    private static final int[] FORK_BLOCKS = new int[STATES];
+    private static final short[] VALUE = new short[STATES];
+
+    private static final int WINNER_SHIFT = 18, FULL_BIT = 1 << 20, DEAD_BIT = 1 << 21, TWO_SHIFT = 22;
+
+    static {
+	for (int mask = 0; mask < TTTLookup.SIZE; mask++) {
+	    int code = 0, power = 1;
+	    for (int c = 0; c < 9; c++) {
+		if ((mask & (1 << c)) != 0) {
+		    code += power;
+		}
+		power *= 3;
+	    }
+	    BASE3[mask] = code;
+	}
+
+	for (int mask1 = 0; mask1 < TTTLookup.SIZE; mask1++) {
+	    for (int mask2 = 0; mask2 < TTTLookup.SIZE; mask2++) {
+		if ((mask1 & mask2) == 0) {
+		    build(mask1, mask2);
+		}
+	    }
+	}
+    }
+
+    private MicroTable() {}
+
+    private static void build(final int mask1, final int mask2) {
+	final int code = code(mask1, mask2);
+	final int empty = ~(mask1 | mask2) & TTTLookup.FULL;
+	final boolean won1 = TTTLookup.IS_WIN[mask1], won2 = TTTLookup.IS_WIN[mask2];
+	final int winner = (won1 ? 1 : 0) | (won2 ? 2 : 0);
+	final int open1 = ~TTTLookup.LINES_WITH[1][mask2] & 0xFF; // lines player 1 can still complete
+	final int open2 = ~TTTLookup.LINES_WITH[1][mask1] & 0xFF;
+	final boolean two1 = TTTLookup.linesWithSome(mask1, mask2, 2) != 0;
+	final boolean two2 = TTTLookup.linesWithSome(mask2, mask1, 2) != 0;
+
+	int info = (TTTLookup.WIN_SQUARES[mask1] & empty) | ((TTTLookup.WIN_SQUARES[mask2] & empty) << 9) | (winner << WINNER_SHIFT);
+	if (empty == 0) {
+	    info |= FULL_BIT;
+	}
+	if (winner != 0 || empty == 0 || (open1 == 0 && open2 == 0)) {
+	    info |= DEAD_BIT;
+	}
+	if (two1) {
+	    info |= 1 << TWO_SHIFT;
+	}
+	if (two2) {
+	    info |= 1 << (TWO_SHIFT + 1);
+	}
+	INFO[code] = info;
+
+	THREATS[code] = threatSquares(mask1, mask2, empty) | (threatSquares(mask2, mask1, empty) << 9);
+	TWO_SQUARES[code] = firstTwoSquares(mask1, mask2, empty, two1) | (firstTwoSquares(mask2, mask1, empty, two2) << 9);
+	FORKS[code] = forkSquares(mask1, empty) | (forkSquares(mask2, empty) << 9);
+	FORK_BLOCKS[code] = forkBlockSquares(mask1, mask2, empty) | (forkBlockSquares(mask2, mask1, empty) << 9);
+
+	if (won1) {
+	    VALUE[code] = WON_VALUE;
+	} else if (won2) {
+	    VALUE[code] = -WON_VALUE;
+	} else {
+	    VALUE[code] = (short) (lineValue(mask1, mask2) - lineValue(mask2, mask1));
+	}
+    }
+
+    /**
+     * Empty squares that give the player a line with two of its marks and an empty third cell
+     */
+    private static int threatSquares(final int mine, final int theirs, final int empty) {
+	final int free = ~TTTLookup.LINES_WITH[1][theirs];
+	int squares = 0;
+	for (int c = 0; c < 9; c++) {
+	    final int bit = 1 << c;
+	    if ((empty & bit) == 0) {
+		continue;
+	    }
+	    final int after = mine | bit;
+	    final int threats = TTTLookup.LINES_WITH[2][after] & ~TTTLookup.LINES_WITH[3][after] & free;
+	    for (int l = 0; l < TTTLookup.NR_LINES; l++) {
+		if ((threats & (1 << l)) != 0 && (TTTLookup.LINE_MASKS[l] & bit) != 0) {
+		    squares |= bit;
+		}
+	    }
+	}
+	return squares;
+    }
+
+    /**
+     * Empty squares after which the player can win on two different squares, the opponent can only block one of them
+     */
+    private static int forkSquares(final int mine, final int empty) {
+	int squares = 0;
+	for (int c = 0; c < 9; c++) {
+	    final int bit = 1 << c;
+	    if ((empty & bit) != 0 && Integer.bitCount(TTTLookup.WIN_SQUARES[mine | bit] & empty & ~bit) >= 2) {
+		squares |= bit;
+	    }
+	}
+	return squares;
+    }
+
+    /**
+     * Empty squares after which the opponent can not fork on its next move, when it can now: either a two in a row that forces the opponent to block on a square
+     * that does not give it a fork, or a square that leaves no fork squares (such as the only one there is)
+     */
+    private static int forkBlockSquares(final int mine, final int theirs, final int empty) {
+	if (forkSquares(theirs, empty) == 0) {
+	    return 0;
+	}
+	int squares = 0;
+	for (int c = 0; c < 9; c++) {
+	    final int bit = 1 << c;
+	    if ((empty & bit) == 0) {
+		continue;
+	    }
+	    final int emptyAfter = empty & ~bit;
+	    final int threats = TTTLookup.WIN_SQUARES[mine | bit] & emptyAfter;
+	    if (threats != 0) {
+		// the opponent has to block, a second threat would be a fork of our own
+		final int block = Integer.lowestOneBit(threats);
+		if (threats != block || Integer.bitCount(TTTLookup.WIN_SQUARES[theirs | block] & emptyAfter & ~block) < 2) {
+		    squares |= bit;
+		}
+	    } else if (forkSquares(theirs, emptyAfter) == 0) {
+		squares |= bit;
+	    }
+	}
+	return squares;
+    }
+
+    /**
+     * Empty squares on which the player gets two in line (as TTTField.hasSomeInLine counts them), when it has none yet
+     */
+    private static int firstTwoSquares(final int mine, final int theirs, final int empty, final boolean hasTwo) {
+	if (hasTwo) {
+	    return 0;
+	}
+	int squares = 0;
+	for (int c = 0; c < 9; c++) {
+	    final int bit = 1 << c;
+	    if ((empty & bit) != 0 && TTTLookup.linesWithSome(mine | bit, theirs, 2) != 0) {
+		squares |= bit;
+	    }
+	}
+	return squares;
+    }
+
+    private static int lineValue(final int mine, final int theirs) {
+	final int openLines = ~TTTLookup.LINES_WITH[1][theirs];
+	return TWO_VALUE * Integer.bitCount(TTTLookup.LINES_WITH[2][mine] & openLines) + ONE_VALUE * Integer.bitCount(TTTLookup.LINES_WITH[1][mine] & openLines);
+    }
+
+    /**
+     * Returns the code of a board with player 1 on mask1 and player 2 on mask2
+     */
+    public static int code(final int mask1, final int mask2) {
+	return BASE3[mask1] + 2 * BASE3[mask2];
+    }
+
+    /**
+     * Returns 0, 1 or 2 (3 when both players have a line, which can not happen in a game)
+     */
+    public static int getWinner(final int code) {
+	return (INFO[code] >>> WINNER_SHIFT) & 0x3;
+    }
+
+    public static boolean isFull(final int code) {
+	return (INFO[code] & FULL_BIT) != 0;
+    }
+
+    /**
+     * Returns true when the board is won, full, or nobody can complete a line anymore
+     */
+    public static boolean isDead(final int code) {
+	return (INFO[code] & DEAD_BIT) != 0;
+    }
+
+    /**
+     * Empty squares on which player completes three in a row
+     */
+    public static int getWinSquares(final int code, final int player) {
+	return (INFO[code] >>> (9 * (player - 1))) & TTTLookup.FULL;
+    }
+
+    /**
+     * Empty squares on which player makes an open two in line (a threat to win there next)
+     */
+    public static int getThreatSquares(final int code, final int player) {
+	return (THREATS[code] >>> (9 * (player - 1))) & TTTLookup.FULL;
+    }
+
+    /**
+     * Empty squares on which player makes two threats at once (a fork)
+     */
+    public static int getForkSquares(final int code, final int player) {
+	return (FORKS[code] >>> (9 * (player - 1))) & TTTLookup.FULL;
+    }
+
+    /**
+     * Empty squares that take away the forks of the opponent of player, 0 when it has none (blocking an opponent's fork)
+     */
+    public static int getForkBlockSquares(final int code, final int player) {
+	return (FORK_BLOCKS[code] >>> (9 * (player - 1))) & TTTLookup.FULL;
+    }
+
+    /**
+     * Same as TTTField.hasSomeInLine(player, 2)
+     */
+    public static boolean hasTwoInLine(final int code, final int player) {
+	return (INFO[code] & (1 << (TWO_SHIFT + player - 1))) != 0;
+    }
+
+    /**
+     * Empty squares that give player two in line when it has none yet
+     */
+    public static int getTwoInLineSquares(final int code, final int player) {
+	return (TWO_SQUARES[code] >>> (9 * (player - 1))) & TTTLookup.FULL;
+    }
+
+    /**
+     * Heuristic value for player 1 (negative is good for player 2): open lines with one or two marks, WON_VALUE for a won board
+     */
+    public static int getValue(final int code) {
+	return VALUE[code];
+    }
+}
@@ -0,0 +1,110 @@
+package bot;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * MoveEvent class
+ *
+ * JDK Flight Recorder event for one move of the bot, its duration is the time from the start of makeTurn to the move. Record it with
+ * -XX:StartFlightRecording; a recording that is started later with jcmd gets the events from then on.
+ *
+ * Only {@link MoveStats} uses this class, and only once the Flight Recorder is running, so the bot still runs without JFR and does not pay for starting it up.
+ *
+ * @author stilkin
+ */
+@Name("bot.Move")
+@Label("Move")
+@Category("Ultimate Tic Tac Toe")
+@Description("One move of the bot, with its time per phase and search statistics")
+@StackTrace(false)
+class MoveEvent extends Event {
+    @Label("Move Number")
+    int moveNr;
+
+    @Label("Round")
+    int round;
+
+    @Label("Source")
+    @Description("Part of the bot that chose the move: book, pns, endgame, search or rules")
+    String source;
+
+    @Label("Time Left")
+    @Timespan(Timespan.MILLISECONDS)
+    long timeLeft;
+
+    @Label("Budget")
+    @Timespan(Timespan.MILLISECONDS)
+    long budget;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseTime;
+
+    @Label("Analysis Time")
+    @Description("Opening book, forced win and endgame solver")
+    @Timespan(Timespan.NANOSECONDS)
+    long analysisTime;
+
+    @Label("Search Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long searchTime;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Nodes per Second")
+    long nodesPerSecond;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Score")
+    int score;
+
+    @Label("Move")
+    String move;
+
+    @Label("Principal Variation")
+    String principalVariation;
+
+    /**
+     * Returns a started event, null when nobody records it
+     */
+    static Object start() {
+	final MoveEvent event = new MoveEvent();
+	if (!event.isEnabled()) {
+	    return null;
+	}
+	event.begin();
+	return event;
+    }
+
+    static void finish(final Object started, final MoveStats stats) {
+	final MoveEvent event = (MoveEvent) started;
+	event.end();
+	if (!event.shouldCommit()) {
+	    return; // below the threshold of the recording
+	}
+	event.moveNr = stats.getMoveNr();
+	event.round = stats.getRoundNr();
+	event.source = stats.getSource();
+	event.timeLeft = stats.getTimeLeft();
+	event.budget = stats.getBudget();
+	event.parseTime = stats.getPhaseNanos(MoveStats.PARSE);
+	event.analysisTime = stats.getPhaseNanos(MoveStats.ANALYSIS);
+	event.searchTime = stats.getPhaseNanos(MoveStats.SEARCH);
+	event.nodes = stats.getNodes();
+	event.nodesPerSecond = stats.getNodesPerSecond();
+	event.depth = stats.getDepth();
+	event.score = stats.getScore();
+	event.move = (stats.getMove() >= 0) ? Position.getX(stats.getMove()) + "," + Position.getY(stats.getMove()) : null;
+	event.principalVariation = stats.getPvString();
+	event.commit();
+    }
+}
@@ -0,0 +1,149 @@
+package bot;
+
+/**
+ * MoveOrderer class
+ *
+ * Move ordering for the alpha-beta search, scored in place in an int[] so it costs no garbage. In order of priority: the move from the transposition table, the
+ * {@link MicroTable} tactics (win a board, block a win, make a fork), the two killer moves of the ply (quiet moves that caused a cutoff in a sibling node) and at last
+ * the history table, which counts for every player and cell how often a quiet move was good enough for a cutoff anywhere in the tree. Within that order, moves that
+ * send the opponent to a board it can win go down a little, and moves that give it a free choice go to the very end.
+ *
+ * Killers and history are kept between searches, history is halved at the start of each one so old results fade out.
+ *
+ * @author stilkin
+ */
+public class MoveOrderer {
+    private static final int TABLE_MOVE = Integer.MAX_VALUE;
+    private static final int WIN = 1 << 29, BLOCK = 1 << 28, FORK = 1 << 27;
+    private static final int KILLER_1 = 1 << 26, KILLER_2 = 1 << 25;
+    private static final int THREAT = 1 << 24;
+    private static final int SEND_FREE = 1 << 30; // a move that gives the opponent a free choice, below everything else
+    private static final int SEND_WIN = 1 << 23; // a move that sends the opponent to a board it can win
+    private static final int MAX_HISTORY = 1 << 22;
+
+    private final int[][] mKillers = new int[AlphaBetaSearch.MAX_PLY][2];
+    private final int[][] mHistory = new int[3][Position.NR_CELLS]; // [player][move]
+    private final int[] mSendScores = new int[Position.NR_BOARDS];
+
+    public MoveOrderer() {
+	clear();
+    }
+
+    public void clear() {
+	for (int ply = 0; ply < AlphaBetaSearch.MAX_PLY; ply++) {
+	    mKillers[ply][0] = -1;
+	    mKillers[ply][1] = -1;
+	}
+	for (int player = 1; player <= 2; player++) {
+	    for (int move = 0; move < Position.NR_CELLS; move++) {
+		mHistory[player][move] = 0;
+	    }
+	}
+    }
+
+    /**
+     * Call at the start of every search: the history of earlier searches counts for half
+     */
+    public void newSearch() {
+	for (int player = 1; player <= 2; player++) {
+	    for (int move = 0; move < Position.NR_CELLS; move++) {
+		mHistory[player][move] >>= 1;
+	    }
+	}
+    }
+
+    /**
+     * Score the moves of position and sort them, best first
+     */
+    public void orderMoves(final Position position, final int[] moves, final int[] scores, final int nrMoves, final int tableMove, final int ply) {
+	final int side = position.getSide();
+	final int opponent = 3 - side;
+	final int decided = position.getDecidedBoards();
+	final int[] history = mHistory[side];
+	final int killer1 = mKillers[ply][0], killer2 = mKillers[ply][1];
+
+	// where a move on each square sends the opponent
+	final int[] sendScores = mSendScores;
+	for (int b = 0; b < Position.NR_BOARDS; b++) {
+	    if ((decided & (1 << b)) != 0) {
+		sendScores[b] = -SEND_FREE;
+	    } else if (MicroTable.getWinSquares(MicroTable.code(position.getBoardMask(1, b), position.getBoardMask(2, b)), opponent) != 0) {
+		sendScores[b] = -SEND_WIN;
+	    } else {
+		sendScores[b] = 0;
+	    }
+	}
+
+	int lastBoard = -1;
+	int wins = 0, blocks = 0, forks = 0, threats = 0;
+	for (int i = 0; i < nrMoves; i++) {
+	    final int move = moves[i];
+	    if (move == tableMove) {
+		scores[i] = TABLE_MOVE;
+		continue;
+	    }
+	    final int board = move / 9;
+	    final int square = move % 9;
+	    if (board != lastBoard) {
+		// moves come grouped by board
+		final int code = MicroTable.code(position.getBoardMask(1, board), position.getBoardMask(2, board));
+		wins = MicroTable.getWinSquares(code, side);
+		blocks = MicroTable.getWinSquares(code, opponent);
+		forks = MicroTable.getForkSquares(code, side);
+		threats = MicroTable.getThreatSquares(code, side);
+		lastBoard = board;
+	    }
+
+	    final int bit = 1 << square;
+	    int score;
+	    if ((wins & bit) != 0) {
+		score = WIN;
+	    } else if ((blocks & bit) != 0) {
+		score = BLOCK;
+	    } else if ((forks & bit) != 0) {
+		score = FORK;
+	    } else if (move == killer1) {
+		score = KILLER_1;
+	    } else if (move == killer2) {
+		score = KILLER_2;
+	    } else {
+		score = history[move];
+		if ((threats & bit) != 0) {
+		    score += THREAT;
+		}
+	    }
+	    scores[i] = score + sendScores[square];
+	}
+	AlphaBetaSearch.sortMoves(moves, scores, nrMoves);
+    }
+
+    /**
+     * A move caused a beta cutoff at ply, with depth plies left to search
+     */
+    public void addCutoff(final Position position, final int move, final int depth, final int ply) {
+	if (isTactical(position, move)) {
+	    return; // those are ordered first anyway
+	}
+	if (mKillers[ply][0] != move) {
+	    mKillers[ply][1] = mKillers[ply][0];
+	    mKillers[ply][0] = move;
+	}
+	final int[] history = mHistory[position.getSide()];
+	history[move] += depth * depth;
+	if (history[move] > MAX_HISTORY) {
+	    for (int player = 1; player <= 2; player++) {
+		for (int m = 0; m < Position.NR_CELLS; m++) {
+		    mHistory[player][m] >>= 1;
+		}
+	    }
+	}
+    }
+
+    private static boolean isTactical(final Position position, final int move) {
+	final int board = move / 9;
+	final int code = MicroTable.code(position.getBoardMask(1, board), position.getBoardMask(2, board));
+	final int side = position.getSide();
+	final int tactics = MicroTable.getWinSquares(code, side) | MicroTable.getWinSquares(code, 3 - side) | MicroTable.getForkSquares(code, side);
+	return (tactics & (1 << (move % 9))) != 0;
+    }
+}
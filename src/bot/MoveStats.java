@@ -0,0 +1,281 @@
+package bot;
+
+/**
+ * MoveStats class
+ *
+ * What happened during one move of the bot: the time budget, the time spent per phase, which part of the bot chose the move and, for a search, its nodes, depth,
+ * score and principal variation. The phases are parsing (the protocol lines of the move and building the {@link Position}), analysis (opening book, forced win and
+ * endgame solver) and search (the engine, or the rule based bot).
+ *
+ * {@link BotStarter} fills one record per move, logs it as one line, writes it as a line of JSON when asked to (--stats) and commits it as a JDK Flight Recorder
+ * {@link MoveEvent}. The record is reused for the next move.
+ *
+ * @author stilkin
+ */
+public class MoveStats {
+    public static final int PARSE = 0, ANALYSIS = 1, SEARCH = 2;
+    private static final String[] PHASE_NAMES = { "parse", "analysis", "search" };
+    public static final String BOOK = "book", FORCED_WIN = "pns", ENDGAME = "endgame", ENGINE = "search", RULES = "rules";
+
+    private static final boolean JFR = hasFlightRecorder();
+
+    private int mMoveNr;
+    private int mRoundNr;
+    private int mTimeLeft;
+    private int mBudget;
+    private long mStart;
+    private final long[] mPhaseNanos = new long[PHASE_NAMES.length];
+    private long mTotalNanos;
+    private String mSource;
+    private long mNodes;
+    private int mDepth;
+    private int mScore;
+    private int mMove;
+    private final int[] mPv = new int[Position.NR_CELLS];
+    private int mPvLength;
+    private Object mEvent; // a MoveEvent, only touched once the Flight Recorder runs
+
+    private static boolean hasFlightRecorder() {
+	try {
+	    Class.forName("jdk.jfr.Event");
+	    return true;
+	} catch (final ClassNotFoundException e) {
+	    return false;
+	}
+    }
+
+    /**
+     * Whether the Flight Recorder has been started, by -XX:StartFlightRecording or later with jcmd. Until then MoveEvent is not even loaded: registering an event
+     * class starts up JFR, which takes longer than a whole move.
+     */
+    private static boolean isRecording() {
+	return JFR && jdk.jfr.FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Start the record of a move
+     *
+     * @param start
+     *            System.nanoTime() at which the move was asked for
+     * @param parseNanos
+     *            time already spent on parsing the protocol lines of this move
+     */
+    public void begin(final long start, final int moveNr, final int roundNr, final int timeLeft, final long parseNanos) {
+	mEvent = isRecording() ? MoveEvent.start() : null;
+	mStart = start;
+	mMoveNr = moveNr;
+	mRoundNr = roundNr;
+	mTimeLeft = timeLeft;
+	mBudget = 0;
+	for (int phase = 0; phase < mPhaseNanos.length; phase++) {
+	    mPhaseNanos[phase] = 0;
+	}
+	mPhaseNanos[PARSE] = parseNanos;
+	mTotalNanos = 0;
+	mSource = null;
+	mNodes = 0;
+	mDepth = 0;
+	mScore = 0;
+	mMove = -1;
+	mPvLength = 0;
+    }
+
+    /**
+     * Count the time since from for phase
+     *
+     * @return System.nanoTime() now, the start of the next phase
+     */
+    public long addTime(final int phase, final long from) {
+	final long now = System.nanoTime();
+	mPhaseNanos[phase] += now - from;
+	return now;
+    }
+
+    public void setBudget(final int budget) {
+	mBudget = budget;
+    }
+
+    public void addNodes(final long nodes) {
+	mNodes += nodes;
+    }
+
+    /**
+     * The move was chosen by source, without a search that has a depth or a score
+     */
+    public void setMove(final String source, final int move) {
+	mSource = source;
+	mMove = move;
+	if (move >= 0) {
+	    mPv[0] = move;
+	    mPvLength = 1;
+	}
+    }
+
+    /**
+     * The move was chosen by engine
+     */
+    public void setSearch(final SearchEngine engine, final int move) {
+	mSource = ENGINE;
+	mMove = move;
+	mNodes += engine.getNodeCount();
+	mDepth = engine.getDepth();
+	mScore = engine.getScore();
+	mPvLength = engine.getPrincipalVariation(mPv);
+	if (mPvLength == 0 || mPv[0] != move) {
+	    mPv[0] = move;
+	    mPvLength = 1;
+	}
+    }
+
+    /**
+     * Close the record: count the total time and send the Flight Recorder event
+     */
+    public void end() {
+	mTotalNanos = System.nanoTime() - mStart;
+	if (mEvent != null) {
+	    MoveEvent.finish(mEvent, this);
+	    mEvent = null;
+	}
+    }
+
+    public int getMoveNr() {
+	return mMoveNr;
+    }
+
+    public int getRoundNr() {
+	return mRoundNr;
+    }
+
+    /**
+     * Returns the ms that were left in the time bank, negative when unknown
+     */
+    public int getTimeLeft() {
+	return mTimeLeft;
+    }
+
+    /**
+     * Returns the ms the move was allowed to take, 0 when it was not searched
+     */
+    public int getBudget() {
+	return mBudget;
+    }
+
+    public long getPhaseNanos(final int phase) {
+	return mPhaseNanos[phase];
+    }
+
+    /**
+     * Returns the time from the start of the move to the move, parsing of the protocol lines not included
+     */
+    public long getTotalNanos() {
+	return mTotalNanos;
+    }
+
+    /**
+     * Returns the part of the bot that chose the move: BOOK, FORCED_WIN, ENDGAME, ENGINE or RULES
+     */
+    public String getSource() {
+	return mSource;
+    }
+
+    /**
+     * Returns the nodes (or playouts) of all searches of the move: forced win, endgame solver and engine
+     */
+    public long getNodes() {
+	return mNodes;
+    }
+
+    public long getNodesPerSecond() {
+	final long nanos = mPhaseNanos[ANALYSIS] + mPhaseNanos[SEARCH];
+	return (nanos == 0) ? 0 : (long) (mNodes * 1e9 / nanos);
+    }
+
+    public int getDepth() {
+	return mDepth;
+    }
+
+    /**
+     * Returns the score of the engine, from our point of view
+     */
+    public int getScore() {
+	return mScore;
+    }
+
+    /**
+     * Returns the move (see {@link Position}), -1 for none
+     */
+    public int getMove() {
+	return mMove;
+    }
+
+    public int getPvLength() {
+	return mPvLength;
+    }
+
+    public int getPvMove(final int index) {
+	return mPv[index];
+    }
+
+    /**
+     * Returns the principal variation as the x,y of its moves, separated by spaces
+     */
+    public String getPvString() {
+	final StringBuilder sb = new StringBuilder(mPvLength * 5);
+	for (int i = 0; i < mPvLength; i++) {
+	    if (i > 0) {
+		sb.append(' ');
+	    }
+	    sb.append(Position.getX(mPv[i])).append(',').append(Position.getY(mPv[i]));
+	}
+	return sb.toString();
+    }
+
+    /**
+     * The record as one line of JSON, times in microseconds, moves as [x, y]
+     */
+    public String toJson() {
+	final StringBuilder sb = new StringBuilder(256);
+	sb.append("{\"move_nr\":").append(mMoveNr);
+	sb.append(",\"round\":").append(mRoundNr);
+	sb.append(",\"source\":\"").append(mSource).append('"');
+	sb.append(",\"time_left_ms\":").append(mTimeLeft);
+	sb.append(",\"budget_ms\":").append(mBudget);
+	sb.append(",\"used_us\":").append(mTotalNanos / 1000);
+	for (int phase = 0; phase < mPhaseNanos.length; phase++) {
+	    sb.append(",\"").append(PHASE_NAMES[phase]).append("_us\":").append(mPhaseNanos[phase] / 1000);
+	}
+	sb.append(",\"nodes\":").append(mNodes);
+	sb.append(",\"nps\":").append(getNodesPerSecond());
+	sb.append(",\"depth\":").append(mDepth);
+	sb.append(",\"score\":").append(mScore);
+	sb.append(",\"best\":");
+	appendJsonMove(sb, mMove);
+	sb.append(",\"pv\":[");
+	for (int i = 0; i < mPvLength; i++) {
+	    if (i > 0) {
+		sb.append(',');
+	    }
+	    appendJsonMove(sb, mPv[i]);
+	}
+	sb.append("]}");
+	return sb.toString();
+    }
+
+    private static void appendJsonMove(final StringBuilder sb, final int move) {
+	if (move < 0) {
+	    sb.append("null");
+	} else {
+	    sb.append('[').append(Position.getX(move)).append(',').append(Position.getY(move)).append(']');
+	}
+    }
+
+    /**
+     * The record as one line for the log
+     */
+    @Override
+    public String toString() {
+	return String.format("Move %d, %s: depth %d, score %d, %d nodes, %d knps, %.1f/%d ms (parse %.2f, analysis %.1f, search %.1f), pv %s", mMoveNr, mSource, mDepth,
+		mScore, mNodes, getNodesPerSecond() / 1000, mTotalNanos / 1e6, mBudget, mPhaseNanos[PARSE] / 1e6, mPhaseNanos[ANALYSIS] / 1e6, mPhaseNanos[SEARCH] / 1e6,
+		getPvString());
+    }
+}
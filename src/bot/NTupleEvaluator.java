@@ -0,0 +1,219 @@
+package bot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * NTupleEvaluator class
+ *
+ * Learned evaluation: a sum of weights, one for every tuple of the position, with the weights trained by {@link NTupleTrainer}. Everything is seen from the side to
+ * move (its marks first in every pattern), so the value needs no sign flip. The tuples are:
+ * <ul>
+ * <li>every microboard that is still being played: its base-3 {@link MicroTable} code, with a table per kind of board (corner, side, center). The code is first turned
+ * so that all boards of a kind face the center the same way.</li>
+ * <li>the board the side to move is sent to, the same way, or one weight for a free choice and one for a board that nobody can win anymore</li>
+ * <li>the 8 lines of the macroboard: the 3 boards as open, ours, theirs or dead (drawn, or nobody can win it anymore), with a table per kind of line</li>
+ * </ul>
+ * That is at most 18 lookups and no branches to speak of.
+ *
+ * File layout (big endian): MAGIC, the number of weights (int), then the weights as floats.
+ *
+ * An instance keeps a buffer for the features, so it must only be used by one thread at a time (several instances may share the weights).
+ *
+ * @author stilkin
+ */
+public class NTupleEvaluator implements Evaluator {
+    public static final long MAGIC = 0x555454544E545550L; // "UTTTNTUP"
+    public static final int MAX_FEATURES = Position.NR_BOARDS + 1 + 8;
+    /** Evaluation points per unit of the weight sum */
+    public static final int SCALE = 1000;
+    private static final int MAX_SCORE = AlphaBetaSearch.WIN / 4;
+
+    private static final int STATES = MicroTable.STATES;
+    private static final int OPEN = 0, MINE = 1, THEIRS = 2, DEAD = 3;
+    private static final int[] BOARD_KIND = { 0, 1, 0, 1, 2, 1, 0, 1, 0 }; // corner, side, center
+    /** The macroboard lines, boards in an order that the symmetries of the board keep */
+    private static final int[][] LINES = { { 0, 1, 2 }, { 6, 7, 8 }, { 0, 3, 6 }, { 2, 5, 8 }, // edges
+	    { 3, 4, 5 }, { 1, 4, 7 }, // middles
+	    { 0, 4, 8 }, { 2, 4, 6 } }; // diagonals
+    private static final int[] LINE_KIND = { 0, 0, 0, 0, 1, 1, 2, 2 };
+
+    static final int MICRO_OFFSET = 0;
+    static final int FORCED_OFFSET = MICRO_OFFSET + 3 * STATES;
+    static final int FREE_INDEX = FORCED_OFFSET + 3 * STATES;
+    static final int DEAD_FORCED_INDEX = FREE_INDEX + 1;
+    static final int LINE_OFFSET = DEAD_FORCED_INDEX + 1;
+    public static final int SIZE = LINE_OFFSET + 3 * 64;
+
+    /** CANONICAL[board][code]: code of the board turned to the standard orientation of its kind, DEAD_BOARD when nobody can win it anymore */
+    private static final char[][] CANONICAL = new char[Position.NR_BOARDS][STATES];
+    private static final char DEAD_BOARD = Character.MAX_VALUE;
+
+    private final float[] mWeights;
+    private final int[] mFeatures = new int[MAX_FEATURES];
+
+    static {
+	final int[] firstOfKind = { 0, 1, 4 };
+	for (int b = 0; b < Position.NR_BOARDS; b++) {
+	    // a symmetry that takes the board to the first board of its kind moves the cells inside it too
+	    int s = 0;
+	    while (OpeningBook.SYM_BOARD[s][b] != firstOfKind[BOARD_KIND[b]]) {
+		s++;
+	    }
+	    final int[] cellMap = new int[9];
+	    for (int c = 0; c < 9; c++) {
+		cellMap[c] = OpeningBook.SYM_MOVE[s][b * 9 + c] % 9;
+	    }
+	    for (int mask1 = 0; mask1 < TTTLookup.SIZE; mask1++) {
+		for (int mask2 = 0; mask2 < TTTLookup.SIZE; mask2++) {
+		    if ((mask1 & mask2) == 0) {
+			final int code = MicroTable.code(mask1, mask2);
+			CANONICAL[b][code] = MicroTable.isDead(code) ? DEAD_BOARD : (char) MicroTable.code(mapCells(mask1, cellMap), mapCells(mask2, cellMap));
+		    }
+		}
+	    }
+	}
+    }
+
+    private static int mapCells(final int mask, final int[] cellMap) {
+	int mapped = 0;
+	for (int c = 0; c < 9; c++) {
+	    if ((mask & (1 << c)) != 0) {
+		mapped |= 1 << cellMap[c];
+	    }
+	}
+	return mapped;
+    }
+
+    /**
+     * An evaluator with all weights 0, to train from scratch
+     */
+    public NTupleEvaluator() {
+	this(new float[SIZE]);
+    }
+
+    public NTupleEvaluator(final float[] weights) {
+	if (weights.length != SIZE) {
+	    throw new IllegalArgumentException("Expected " + SIZE + " weights, got " + weights.length);
+	}
+	mWeights = weights;
+    }
+
+    /**
+     * Read a weights file
+     *
+     * @throws IOException
+     *             when the file can not be read or does not hold weights for this evaluator
+     */
+    public static NTupleEvaluator load(final String file) throws IOException {
+	final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+	try {
+	    if (in.readLong() != MAGIC) {
+		throw new IOException("Not an n-tuple weights file: " + file);
+	    }
+	    final int size = in.readInt();
+	    if (size != SIZE) {
+		throw new IOException("Wrong number of weights in " + file + ": " + size);
+	    }
+	    final float[] weights = new float[size];
+	    for (int i = 0; i < size; i++) {
+		weights[i] = in.readFloat();
+	    }
+	    return new NTupleEvaluator(weights);
+	} finally {
+	    in.close();
+	}
+    }
+
+    public void save(final String file) throws IOException {
+	final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+	try {
+	    out.writeLong(MAGIC);
+	    out.writeInt(mWeights.length);
+	    for (final float weight : mWeights) {
+		out.writeFloat(weight);
+	    }
+	} finally {
+	    out.close();
+	}
+    }
+
+    /**
+     * Writes the weight indices of the tuples of position to features, seen from the side to move
+     *
+     * @return the number of features
+     */
+    static int getFeatures(final Position position, final int[] features) {
+	final int side = position.getSide();
+	final int opponent = 3 - side;
+	final int won = position.getWonBoards(side);
+	final int lost = position.getWonBoards(opponent);
+	final int drawn = position.getDrawnBoards();
+	int count = 0;
+
+	int states = 0; // 2 bits per board
+	for (int b = 0; b < Position.NR_BOARDS; b++) {
+	    final int bit = 1 << b;
+	    if ((won & bit) != 0) {
+		states |= MINE << (2 * b);
+	    } else if ((lost & bit) != 0) {
+		states |= THEIRS << (2 * b);
+	    } else if ((drawn & bit) != 0) {
+		states |= DEAD << (2 * b);
+	    } else {
+		final int code = CANONICAL[b][MicroTable.code(position.getBoardMask(side, b), position.getBoardMask(opponent, b))];
+		if (code == DEAD_BOARD) {
+		    states |= DEAD << (2 * b);
+		} else {
+		    features[count++] = MICRO_OFFSET + BOARD_KIND[b] * STATES + code;
+		}
+	    }
+	}
+
+	final int forced = position.getForcedBoard();
+	if (forced == Position.FREE) {
+	    features[count++] = FREE_INDEX;
+	} else {
+	    final int code = CANONICAL[forced][MicroTable.code(position.getBoardMask(side, forced), position.getBoardMask(opponent, forced))];
+	    features[count++] = (code == DEAD_BOARD) ? DEAD_FORCED_INDEX : FORCED_OFFSET + BOARD_KIND[forced] * STATES + code;
+	}
+
+	for (int l = 0; l < LINES.length; l++) {
+	    final int[] line = LINES[l];
+	    final int pattern = ((states >>> (2 * line[0])) & 3) * 16 + ((states >>> (2 * line[1])) & 3) * 4 + ((states >>> (2 * line[2])) & 3);
+	    features[count++] = LINE_OFFSET + LINE_KIND[l] * 64 + pattern;
+	}
+	return count;
+    }
+
+    /**
+     * Returns the sum of the weights of position, for the side to move
+     */
+    public float getValue(final Position position) {
+	final int[] features = mFeatures;
+	final int count = getFeatures(position, features);
+	float sum = 0;
+	for (int i = 0; i < count; i++) {
+	    sum += mWeights[features[i]];
+	}
+	return sum;
+    }
+
+    @Override
+    public int evaluate(final Position position) {
+	final int score = (int) (getValue(position) * SCALE);
+	return Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+    }
+
+    /**
+     * The weights themselves, shared with the trainer
+     */
+    float[] getWeights() {
+	return mWeights;
+    }
+}
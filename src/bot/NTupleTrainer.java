@@ -0,0 +1,229 @@
+package bot;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NTupleTrainer class
+ *
+ * Trains the weights of the {@link NTupleEvaluator} by temporal difference learning in self play. The players pick the move after which the network likes the
+ * position of the opponent least (a random move with probability epsilon), and after every game each position is moved towards its TD(lambda) return, from the last
+ * position back to the first. The value of a position is tanh of its weight sum, a won game is +1 for the winner.
+ *
+ * Games run on a pool of threads that all update the same weights without any locking: a lost update now and then costs less than the synchronization would. The
+ * weights are written after every report and at the end.
+ *
+ * Usage: java -cp bin bot.NTupleTrainer [--out=ntuple.bin] [--games=N] [--threads=N|auto] [--init=FILE] [--alpha=A] [--lambda=L] [--epsilon=E] [--seed=N]
+ *
+ * @author stilkin
+ */
+public class NTupleTrainer {
+    private static final int REPORT_INTERVAL = 10000; // games between two progress lines
+
+    // options
+    private String mOut = "ntuple.bin";
+    private String mInit = null;
+    private int mGames = 200000;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private float mAlpha = 0.005f;
+    private float mLambda = 0.7f;
+    private float mEpsilon = 0.1f;
+    private long mSeed = System.nanoTime();
+
+    private NTupleEvaluator mEvaluator;
+    private final AtomicInteger mNextGame = new AtomicInteger();
+
+    // statistics since the last report
+    private int mFinished;
+    private int mPlayed;
+    private final int[] mWinners = new int[4];
+    private double mErrorSum;
+    private long mUpdates;
+    private long mStart;
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+	final NTupleTrainer trainer = new NTupleTrainer();
+	Log.setLevel(Log.WARN);
+	for (final String arg : args) {
+	    final int eq = arg.indexOf('=');
+	    if (!arg.startsWith("--") || eq < 0) {
+		throw new IllegalArgumentException("Expected --name=value: " + arg);
+	    }
+	    trainer.set(arg.substring(2, eq), arg.substring(eq + 1));
+	}
+	trainer.run();
+    }
+
+    public void set(final String name, final String value) {
+	if (name.equals("out")) {
+	    mOut = value;
+	} else if (name.equals("init")) {
+	    mInit = value;
+	} else if (name.equals("games")) {
+	    mGames = Integer.parseInt(value);
+	} else if (name.equals("threads")) {
+	    mThreads = value.equals("auto") ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(value);
+	} else if (name.equals("alpha")) {
+	    mAlpha = Float.parseFloat(value);
+	} else if (name.equals("lambda")) {
+	    mLambda = Float.parseFloat(value);
+	} else if (name.equals("epsilon")) {
+	    mEpsilon = Float.parseFloat(value);
+	} else if (name.equals("seed")) {
+	    mSeed = Long.parseLong(value);
+	} else {
+	    throw new IllegalArgumentException("Unknown option: " + name);
+	}
+    }
+
+    /**
+     * Play and learn from all games, then write the weights
+     */
+    public void run() throws IOException, InterruptedException {
+	mEvaluator = (mInit != null) ? NTupleEvaluator.load(mInit) : new NTupleEvaluator();
+	final int threads = Math.max(1, Math.min(mThreads, mGames));
+	System.out.println("Training " + NTupleEvaluator.SIZE + " weights: " + mGames + " games on " + threads + " threads, alpha " + mAlpha + ", lambda " + mLambda
+		+ ", epsilon " + mEpsilon);
+
+	final ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+	    private final AtomicInteger mCount = new AtomicInteger();
+
+	    @Override
+	    public Thread newThread(final Runnable runnable) {
+		final Thread thread = new Thread(runnable, "trainer-" + mCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+	final CountDownLatch done = new CountDownLatch(threads);
+	mStart = System.nanoTime();
+	for (int t = 0; t < threads; t++) {
+	    final long seed = mSeed + t;
+	    pool.execute(new Runnable() {
+		@Override
+		public void run() {
+		    try {
+			new Worker(seed).playGames();
+		    } finally {
+			done.countDown();
+		    }
+		}
+	    });
+	}
+	done.await();
+	pool.shutdown();
+	mEvaluator.save(mOut);
+	System.out.println("Wrote " + mOut);
+    }
+
+    private synchronized void addGame(final int winner, final double errorSum, final int updates) {
+	mWinners[winner]++;
+	mErrorSum += errorSum;
+	mUpdates += updates;
+	mPlayed++;
+	mFinished++;
+	if (mPlayed == REPORT_INTERVAL) {
+	    final double seconds = Math.max(1, System.nanoTime() - mStart) / 1e9;
+	    System.out.println(String.format("%d games, %.0f games/s: player 1 %.1f%%, player 2 %.1f%%, draws %.1f%%, mean squared TD error %.4f", mFinished,
+		    mFinished / seconds, 100.0 * mWinners[1] / mPlayed, 100.0 * mWinners[2] / mPlayed, 100.0 * mWinners[Position.DRAW] / mPlayed, mErrorSum / mUpdates));
+	    try {
+		mEvaluator.save(mOut);
+	    } catch (final IOException e) {
+		Log.error("Could not write %s: %s", mOut, e);
+	    }
+	    mPlayed = 0;
+	    mWinners[1] = mWinners[2] = mWinners[Position.DRAW] = 0;
+	    mErrorSum = 0;
+	    mUpdates = 0;
+	}
+    }
+
+    /**
+     * Plays and learns from games on one thread, with an evaluator of its own on the shared weights
+     */
+    private class Worker {
+	private final Position mPosition = new Position();
+	private final NTupleEvaluator mNetwork = new NTupleEvaluator(mEvaluator.getWeights());
+	private final float[] mWeights = mEvaluator.getWeights();
+	private final FastRandom mRandom;
+	private final int[] mMoves = new int[Position.NR_CELLS];
+	private final int[][] mFeatures = new int[Position.NR_CELLS][NTupleEvaluator.MAX_FEATURES];
+	private final int[] mFeatureCounts = new int[Position.NR_CELLS];
+	private double mErrorSum;
+
+	Worker(final long seed) {
+	    mRandom = new FastRandom(seed);
+	}
+
+	void playGames() {
+	    while (mNextGame.getAndIncrement() < mGames) {
+		mPosition.clear();
+		int plies = 0;
+		while (!mPosition.isGameOver()) {
+		    mFeatureCounts[plies] = NTupleEvaluator.getFeatures(mPosition, mFeatures[plies]);
+		    mPosition.makeMove(chooseMove());
+		    plies++;
+		}
+		// the last move either won the game or drew it
+		final int winner = mPosition.getWinner();
+		mErrorSum = 0;
+		learn(plies, (winner == Position.DRAW) ? 0 : 1);
+		addGame(winner, mErrorSum, plies);
+	    }
+	}
+
+	/**
+	 * A winning move, else the move after which the opponent has the lowest value, or a random move with probability epsilon
+	 */
+	private int chooseMove() {
+	    final int nrMoves = mPosition.generateMoves(mMoves);
+	    if (mRandom.nextInt(1 << 24) < mEpsilon * (1 << 24)) {
+		return mMoves[mRandom.nextInt(nrMoves)];
+	    }
+	    int best = mMoves[0];
+	    float bestValue = Float.MAX_VALUE;
+	    for (int i = 0; i < nrMoves; i++) {
+		mPosition.makeMove(mMoves[i]);
+		final int winner = mPosition.getWinner();
+		final float value = (winner == Position.NONE) ? mNetwork.getValue(mPosition) : ((winner == Position.DRAW) ? 0 : -Float.MAX_VALUE);
+		mPosition.unmakeMove();
+		if (value < bestValue) {
+		    bestValue = value;
+		    best = mMoves[i];
+		}
+	    }
+	    return best;
+	}
+
+	/**
+	 * TD(lambda) from the end of the game back: the return of a position mixes the value of the next position with the return of the next position, seen from
+	 * the other side
+	 *
+	 * @param result
+	 *            result of the last move for the player that made it
+	 */
+	private void learn(final int plies, final float result) {
+	    float target = result;
+	    for (int ply = plies - 1; ply >= 0; ply--) {
+		final int[] features = mFeatures[ply];
+		final int count = mFeatureCounts[ply];
+		float sum = 0;
+		for (int i = 0; i < count; i++) {
+		    sum += mWeights[features[i]];
+		}
+		final float value = (float) Math.tanh(sum);
+		final float error = target - value;
+		mErrorSum += error * error;
+		final float step = mAlpha * error * (1 - value * value);
+		for (int i = 0; i < count; i++) {
+		    mWeights[features[i]] += step;
+		}
+		target = -((1 - mLambda) * value + mLambda * target);
+	    }
+	}
+    }
+}
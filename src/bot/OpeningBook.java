@@ -0,0 +1,216 @@
+package bot;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * OpeningBook class
+ *
+ * Best moves for the first plies, written by {@link BookGenerator} and memory mapped when the bot starts, so looking up a position is a binary search in the page
+ * cache and nothing is read or parsed up front.
+ *
+ * A position and its 7 rotations and mirror images share one entry: the book is keyed on the smallest of their 8 hashes, and the move is stored for that
+ * (canonical) orientation and turned back on the way out.
+ *
+ * File layout (big endian): MAGIC, the number of entries (int), the depth (int), then the entries sorted by key. An entry is one long: the canonical hash with its
+ * lowest 7 bits replaced by the move.
+ *
+ * @author stilkin
+ */
+public class OpeningBook {
+    public static final long MAGIC = 0x5554545442304F4BL; // "UTTTB0OK"
+    public static final int HEADER_SIZE = 16;
+    public static final int NR_SYMMETRIES = 8;
+    private static final long MOVE_MASK = 0x7F;
+
+    /** SYM_MOVE[s][move]: the move after symmetry s */
+    static final int[][] SYM_MOVE = new int[NR_SYMMETRIES][Position.NR_CELLS];
+    /** SYM_BOARD[s][board]: the board after symmetry s */
+    static final int[][] SYM_BOARD = new int[NR_SYMMETRIES][Position.NR_BOARDS];
+    /** INVERSE[s]: the symmetry that undoes s */
+    static final int[] INVERSE = new int[NR_SYMMETRIES];
+
+    private final MappedByteBuffer mEntries;
+    private final int mCount;
+    private final int mDepth;
+
+    static {
+	for (int s = 0; s < NR_SYMMETRIES; s++) {
+	    for (int move = 0; move < Position.NR_CELLS; move++) {
+		final int x = Position.getX(move), y = Position.getY(move);
+		final int tx, ty;
+		switch (s) {
+		case 0:
+		    tx = x;
+		    ty = y;
+		    break;
+		case 1:
+		    tx = 8 - y;
+		    ty = x;
+		    break;
+		case 2:
+		    tx = 8 - x;
+		    ty = 8 - y;
+		    break;
+		case 3:
+		    tx = y;
+		    ty = 8 - x;
+		    break;
+		case 4:
+		    tx = 8 - x;
+		    ty = y;
+		    break;
+		case 5:
+		    tx = x;
+		    ty = 8 - y;
+		    break;
+		case 6:
+		    tx = y;
+		    ty = x;
+		    break;
+		default:
+		    tx = 8 - y;
+		    ty = 8 - x;
+		    break;
+		}
+		SYM_MOVE[s][move] = Position.toMove(tx, ty);
+	    }
+	    for (int board = 0; board < Position.NR_BOARDS; board++) {
+		SYM_BOARD[s][board] = SYM_MOVE[s][board * 9 + 4] / 9; // where the center of the board goes
+	    }
+	}
+	for (int s = 0; s < NR_SYMMETRIES; s++) {
+	    for (int inverse = 0; inverse < NR_SYMMETRIES; inverse++) {
+		if (SYM_MOVE[inverse][SYM_MOVE[s][1]] == 1 && SYM_MOVE[inverse][SYM_MOVE[s][3]] == 3) {
+		    INVERSE[s] = inverse;
+		}
+	    }
+	}
+    }
+
+    private OpeningBook(final MappedByteBuffer entries, final int count, final int depth) {
+	mEntries = entries;
+	mCount = count;
+	mDepth = depth;
+    }
+
+    /**
+     * Map a book file
+     *
+     * @throws IOException
+     *             when the file can not be read or is not a book
+     */
+    public static OpeningBook open(final String file) throws IOException {
+	final RandomAccessFile raf = new RandomAccessFile(file, "r");
+	try {
+	    final FileChannel channel = raf.getChannel();
+	    final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	    if (buffer.capacity() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+		throw new IOException("Not an opening book: " + file);
+	    }
+	    final int count = buffer.getInt(8);
+	    if (HEADER_SIZE + 8L * count > buffer.capacity()) {
+		throw new IOException("Truncated opening book: " + file);
+	    }
+	    return new OpeningBook(buffer, count, buffer.getInt(12));
+	} finally {
+	    raf.close(); // the mapping stays valid
+	}
+    }
+
+    /**
+     * Hash of position after symmetry s, the same as Position.getHash of the turned position
+     */
+    static long getHash(final Position position, final int s) {
+	final int forced = position.getForcedBoard();
+	long hash = Zobrist.FORCED[(forced == Position.FREE) ? 0 : SYM_BOARD[s][forced] + 1];
+	if (position.getSide() == 2) {
+	    hash ^= Zobrist.SIDE;
+	}
+	for (int player = 1; player <= 2; player++) {
+	    for (int b = 0; b < Position.NR_BOARDS; b++) {
+		int mask = position.getBoardMask(player, b);
+		while (mask != 0) {
+		    hash ^= Zobrist.CELLS[player][SYM_MOVE[s][b * 9 + Integer.numberOfTrailingZeros(mask)]];
+		    mask &= mask - 1;
+		}
+	    }
+	}
+	return hash;
+    }
+
+    /**
+     * Returns the symmetry that gives the canonical (smallest) hash of position
+     */
+    static int getCanonicalSymmetry(final Position position) {
+	int best = 0;
+	long bestHash = position.getHash();
+	for (int s = 1; s < NR_SYMMETRIES; s++) {
+	    final long hash = getHash(position, s);
+	    if (hash < bestHash) {
+		bestHash = hash;
+		best = s;
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * Book entry for a move in the canonical orientation of a position with the given canonical hash
+     */
+    static long toEntry(final long canonicalHash, final int canonicalMove) {
+	return (canonicalHash & ~MOVE_MASK) | canonicalMove;
+    }
+
+    /**
+     * Returns the book move for position, -1 when it is not in the book
+     */
+    public int probe(final Position position) {
+	if (mCount == 0 || countMarks(position) >= mDepth) {
+	    return -1;
+	}
+	final int s = getCanonicalSymmetry(position);
+	final long key = getHash(position, s) & ~MOVE_MASK;
+	int low = 0, high = mCount - 1;
+	while (low <= high) {
+	    final int middle = (low + high) >>> 1;
+	    final long entry = mEntries.getLong(HEADER_SIZE + 8 * middle);
+	    final long entryKey = entry & ~MOVE_MASK;
+	    if (entryKey < key) {
+		low = middle + 1;
+	    } else if (entryKey > key) {
+		high = middle - 1;
+	    } else {
+		final int move = SYM_MOVE[INVERSE[s]][(int) (entry & MOVE_MASK)];
+		return isPlayable(position, move) ? move : -1;
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     * Returns the number of marks on the field, the book has the positions with less than depth marks
+     */
+    static int countMarks(final Position position) {
+	int marks = 0;
+	for (int b = 0; b < Position.NR_BOARDS; b++) {
+	    marks += Integer.bitCount(position.getBoardMask(1, b) | position.getBoardMask(2, b));
+	}
+	return marks;
+    }
+
+    private static boolean isPlayable(final Position position, final int move) {
+	final int board = move / 9;
+	return (position.getPlayableBoards() & (1 << board)) != 0 && (position.getEmptyMask(board) & (1 << (move % 9))) != 0;
+    }
+
+    public int size() {
+	return mCount;
+    }
+
+    public int getDepth() {
+	return mDepth;
+    }
+}
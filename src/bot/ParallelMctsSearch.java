@@ -0,0 +1,387 @@
+package bot;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * ParallelMctsSearch class
+ *
+ * Tree parallel version of {@link MctsSearch}: a number of worker threads run iterations on one shared tree, without locks.
+ * <ul>
+ * <li>visits are counted on the way down, so a node that is being played out already looks like a loss to the other threads (virtual loss) until its result comes
+ * back.</li>
+ * <li>results are kept in half points (win 2, draw 1) so they can be added atomically.</li>
+ * <li>a thread claims a leaf for expansion with a CAS on firstChild, the other threads play out from the leaf until the children are published.</li>
+ * </ul>
+ * Like the single threaded search it keeps the tree between searches when the new position is one or two plies below the old root.
+ *
+ * @author stilkin
+ */
+public class ParallelMctsSearch implements SearchEngine {
+    private static final float EXPLORATION = 1.0f;
+    private static final int TIME_CHECK_INTERVAL = 63;
+    private static final int UNEXPANDED = 0, EXPANDING = -1;
+    private static final int REUSE_LIMIT = 4;
+
+    private final int mCapacity;
+    private final AtomicIntegerArray mFirstChild;
+    private final byte[] mChildCount; // written before firstChild is published
+    private final byte[] mMove;
+    private final AtomicIntegerArray mVisits;
+    private final AtomicIntegerArray mWins; // half points for the player that made the move into the node
+    private final AtomicInteger mSize = new AtomicInteger();
+    private int mRootNode = 0; // only changed between searches, while the workers are idle
+
+    private final Position mRoot = new Position();
+    private final Worker[] mWorkers;
+    private final ExecutorService mExecutor;
+
+    private volatile long mDeadline;
+    private volatile boolean mStopped;
+    private long mPlayouts;
+    private int mScore;
+    private int mDepth;
+
+    public ParallelMctsSearch(final int threads) {
+	this(threads, MctsSearch.DEFAULT_NODES);
+    }
+
+    public ParallelMctsSearch(final int threads, final int capacity) {
+	mCapacity = capacity;
+	mFirstChild = new AtomicIntegerArray(capacity);
+	mChildCount = new byte[capacity];
+	mMove = new byte[capacity];
+	mVisits = new AtomicIntegerArray(capacity);
+	mWins = new AtomicIntegerArray(capacity);
+
+	mWorkers = new Worker[threads];
+	for (int t = 0; t < threads; t++) {
+	    mWorkers[t] = new Worker(System.nanoTime() + t);
+	}
+	mExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+	    private int mCount = 0;
+
+	    @Override
+	    public Thread newThread(final Runnable r) {
+		final Thread thread = new Thread(r, "mcts-worker-" + (mCount++));
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+    }
+
+    @Override
+    public int findMove(final Position position, final long deadline) {
+	final long start = System.nanoTime();
+	final Worker main = mWorkers[0];
+	final int reused = findNode(position, main.mPosition);
+	mRoot.copyFrom(position);
+	mDeadline = deadline;
+	mStopped = false;
+	if (reused >= 0) {
+	    mRootNode = reused;
+	    Log.info("MCTS: reusing subtree with %d visits", mVisits.get(reused));
+	} else {
+	    resetTree();
+	}
+
+	main.mPosition.copyFrom(mRoot);
+	if (mFirstChild.get(mRootNode) == UNEXPANDED && !expand(mRootNode, main.mPosition, main.mMoves)) {
+	    return -1;
+	}
+	if (mChildCount[mRootNode] == 1) { // forced, no search; the statistics are those of the child so far
+	    final int only = mFirstChild.get(mRootNode);
+	    mPlayouts = 0;
+	    mDepth = 0;
+	    mScore = (int) (500L * mWins.get(only) / Math.max(1, mVisits.get(only)));
+	    return mMove[only];
+	}
+
+	final CountDownLatch done = new CountDownLatch(mWorkers.length);
+	for (final Worker worker : mWorkers) {
+	    worker.mDone = done;
+	    mExecutor.execute(worker);
+	}
+	boolean interrupted = false;
+	while (done.getCount() > 0) {
+	    try {
+		done.await();
+	    } catch (final InterruptedException e) {
+		mStopped = true; // the workers still own the tree, wait for them
+		interrupted = true;
+	    }
+	}
+	if (interrupted) {
+	    Thread.currentThread().interrupt();
+	}
+
+	mPlayouts = 0;
+	mDepth = 0;
+	for (final Worker worker : mWorkers) {
+	    mPlayouts += worker.mPlayouts;
+	    mDepth = Math.max(mDepth, worker.mMaxDepth);
+	}
+
+	final int best = getMostVisitedChild(mRootNode);
+	mScore = (int) (500L * mWins.get(best) / Math.max(1, mVisits.get(best)));
+	final long elapsed = Math.max(1, System.nanoTime() - start);
+	Log.info("MCTS: %d threads, %d playouts (%d/s), %d nodes, depth %d", mWorkers.length, mPlayouts, mPlayouts * 1000000000L / elapsed, mSize.get(),
+		mDepth);
+	return mMove[best];
+    }
+
+    private void resetTree() {
+	mRootNode = 0;
+	mSize.set(1);
+	mFirstChild.set(0, UNEXPANDED);
+	mChildCount[0] = 0;
+	mVisits.set(0, 0);
+	mWins.set(0, 0);
+    }
+
+    /**
+     * Look for position in the tree, at most two plies below the old root
+     *
+     * @return the node, -1 when it is not there or the tree is too full to be worth keeping
+     */
+    private int findNode(final Position position, final Position pos) {
+	final int size = mSize.get();
+	if (size == 0 || size > mCapacity - mCapacity / REUSE_LIMIT) {
+	    return -1;
+	}
+	final long hash = position.getHash();
+	pos.copyFrom(mRoot);
+	if (pos.getHash() == hash) {
+	    return mRootNode;
+	}
+	final int first = mFirstChild.get(mRootNode);
+	for (int c = first; first > 0 && c < first + mChildCount[mRootNode]; c++) {
+	    pos.makeMove(mMove[c]);
+	    if (pos.getHash() == hash) {
+		return c;
+	    }
+	    final int grandChild = mFirstChild.get(c);
+	    for (int g = grandChild; grandChild > 0 && g < grandChild + mChildCount[c]; g++) {
+		pos.makeMove(mMove[g]);
+		final boolean found = pos.getHash() == hash;
+		pos.unmakeMove();
+		if (found) {
+		    return g;
+		}
+	    }
+	    pos.unmakeMove();
+	}
+	return -1;
+    }
+
+    private int selectChild(final int node, final int first) {
+	final int last = first + mChildCount[node];
+	final float logParent = (float) Math.log(mVisits.get(node) + 1);
+	int best = first;
+	float bestValue = Float.NEGATIVE_INFINITY;
+	for (int c = first; c < last; c++) {
+	    final int visits = mVisits.get(c);
+	    if (visits == 0) {
+		return c;
+	    }
+	    final float value = mWins.get(c) * 0.5f / visits + EXPLORATION * (float) Math.sqrt(logParent / visits);
+	    if (value > bestValue) {
+		bestValue = value;
+		best = c;
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * Try to allocate the children of node. Returns false when another thread is expanding it, it has no moves or the pool is full.
+     */
+    private boolean expand(final int node, final Position pos, final int[] moves) {
+	if (!mFirstChild.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+	    return false;
+	}
+	final int nrMoves = pos.generateMoves(moves);
+	final int first = (nrMoves == 0) ? -1 : reserve(nrMoves);
+	if (first < 0) {
+	    mFirstChild.set(node, UNEXPANDED);
+	    return false;
+	}
+	for (int i = 0; i < nrMoves; i++) {
+	    final int child = first + i;
+	    mFirstChild.set(child, UNEXPANDED);
+	    mChildCount[child] = 0;
+	    mMove[child] = (byte) moves[i];
+	    mVisits.set(child, 0);
+	    mWins.set(child, 0);
+	}
+	mChildCount[node] = (byte) nrMoves;
+	mFirstChild.set(node, first); // publishes the children
+	return true;
+    }
+
+    /**
+     * Take count nodes from the pool, mSize never grows past the capacity
+     *
+     * @return the first of them, -1 when the pool is full
+     */
+    private int reserve(final int count) {
+	while (true) {
+	    final int size = mSize.get();
+	    if (size + count > mCapacity) {
+		return -1;
+	    }
+	    if (mSize.compareAndSet(size, size + count)) {
+		return size;
+	    }
+	}
+    }
+
+    private int getMostVisitedChild(final int node) {
+	final int first = mFirstChild.get(node);
+	int best = first;
+	for (int c = first + 1; c < first + mChildCount[node]; c++) {
+	    if (mVisits.get(c) > mVisits.get(best)) {
+		best = c;
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * State of one search thread
+     */
+    private class Worker implements Runnable {
+	private final Position mPosition = new Position();
+	private final int[] mMoves = new int[Position.NR_CELLS];
+	private final int[] mPath = new int[AlphaBetaSearch.MAX_PLY];
+	private final FastRandom mRandom;
+	private CountDownLatch mDone;
+	private long mPlayouts;
+	private int mMaxDepth;
+	private int mExpanding = -1; // node this worker has marked EXPANDING, -1 for none
+
+	Worker(final long seed) {
+	    mRandom = new FastRandom(seed);
+	}
+
+	@Override
+	public void run() {
+	    mPlayouts = 0;
+	    mMaxDepth = 0;
+	    try {
+		while (!mStopped) {
+		    if ((mPlayouts & TIME_CHECK_INTERVAL) == 0 && System.nanoTime() >= mDeadline) {
+			break;
+		    }
+		    iterate();
+		    mPlayouts++;
+		}
+	    } catch (final RuntimeException e) {
+		Log.error("MCTS worker %s failed: %s", Thread.currentThread().getName(), e);
+		if (mExpanding >= 0) { // else the other workers take the node for a leaf for good
+		    mFirstChild.compareAndSet(mExpanding, EXPANDING, UNEXPANDED);
+		    mExpanding = -1;
+		}
+	    } finally {
+		mDone.countDown();
+	    }
+	}
+
+	private void iterate() {
+	    final Position pos = mPosition;
+	    pos.copyFrom(mRoot);
+	    int node = mRootNode;
+	    int depth = 0;
+	    mPath[0] = node;
+	    mVisits.incrementAndGet(node);
+
+	    // selection, every visit is counted right away as virtual loss
+	    int first;
+	    while ((first = mFirstChild.get(node)) > 0) {
+		node = selectChild(node, first);
+		mVisits.incrementAndGet(node);
+		pos.makeMove(mMove[node]);
+		mPath[++depth] = node;
+	    }
+
+	    if (first == UNEXPANDED && !pos.isGameOver() && mVisits.get(node) > 1 && tryExpand(node, pos)) {
+		node = mFirstChild.get(node) + mRandom.nextInt(mChildCount[node]);
+		mVisits.incrementAndGet(node);
+		pos.makeMove(mMove[node]);
+		mPath[++depth] = node;
+	    }
+	    if (depth > mMaxDepth) {
+		mMaxDepth = depth;
+	    }
+
+	    final int winner = MctsSearch.playout(pos, mMoves, mRandom);
+
+	    int mover = 3 - mRoot.getSide();
+	    for (int d = 0; d <= depth; d++) {
+		if (winner == mover) {
+		    mWins.addAndGet(mPath[d], 2);
+		} else if (winner == Position.DRAW) {
+		    mWins.addAndGet(mPath[d], 1);
+		}
+		mover = 3 - mover;
+	    }
+	}
+
+	private boolean tryExpand(final int node, final Position pos) {
+	    mExpanding = node;
+	    final boolean expanded = expand(node, pos, mMoves);
+	    mExpanding = -1;
+	    return expanded;
+	}
+    }
+
+    @Override
+    public void stop() {
+	mStopped = true;
+    }
+
+    @Override
+    public void close() {
+	mStopped = true;
+	mExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the expected result of the chosen move in per mille, 1000 is a certain win
+     */
+    @Override
+    public int getScore() {
+	return mScore;
+    }
+
+    @Override
+    public int getDepth() {
+	return mDepth;
+    }
+
+    @Override
+    public long getNodeCount() {
+	return mPlayouts;
+    }
+
+    /**
+     * The most visited child of every node, from the root down. Call it between searches, while the workers are idle.
+     */
+    @Override
+    public int getPrincipalVariation(final int[] moves) {
+	int length = 0;
+	int node = mRootNode;
+	while (length < moves.length && mFirstChild.get(node) > 0) {
+	    node = getMostVisitedChild(node);
+	    if (mVisits.get(node) == 0) {
+		break;
+	    }
+	    moves[length++] = mMove[node];
+	}
+	return length;
+    }
+}
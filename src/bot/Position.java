@@ -0,0 +1,419 @@
+package bot;
+
+/**
+ * Position class
+ *
+ * Compact state of a whole game for searching: every microboard is a 9-bit mask per player, the macroboard is a set of won and drawn boards and the next player is
+ * either sent to one board or gets a free choice. Moves are made and unmade in place, so a search does not create any garbage.
+ *
+ * A move is a number between 0 and 80: board * 9 + square, where board = (y / 3) * 3 + x / 3 and square = (y % 3) * 3 + x % 3 in global coordinates. Bit m of the legal
+ * move mask is move m, bits 0-63 live in the first long and bits 64-80 in the second one.
+ *
+ * The Zobrist hash covers the cells, the forced board and the side to move, and is updated with every move.
+ *
+ * @author stilkin
+ */
+public class Position {
+    public static final int NR_BOARDS = 9, NR_CELLS = 81;
+    public static final int FREE = -1; // next player may choose any open board
+    public static final int NONE = 0, DRAW = 3;
+
+    private static final int[] MOVE_X = new int[NR_CELLS];
+    private static final int[] MOVE_Y = new int[NR_CELLS];
+
+    static {
+	for (int move = 0; move < NR_CELLS; move++) {
+	    final int board = move / 9, square = move % 9;
+	    MOVE_X[move] = (board % 3) * 3 + square % 3;
+	    MOVE_Y[move] = (board / 3) * 3 + square / 3;
+	}
+    }
+
+    private final int[][] mBoards = new int[3][NR_BOARDS]; // [player][board]
+    private final int[] mWon = new int[3]; // boards won by player 1 and 2
+    private int mDrawn; // boards that are full without a winner
+    private int mForced = FREE;
+    private int mSide = 1;
+    private int mWinner = NONE;
+    private long mHash;
+
+    private int mPly = 0;
+    private final int[] mMoveStack = new int[NR_CELLS];
+    private final int[] mForcedStack = new int[NR_CELLS];
+    private final long[] mHashStack = new long[NR_CELLS];
+
+    public Position() {
+	clear();
+    }
+
+    public static int toMove(final int x, final int y) {
+	return ((y / 3) * 3 + x / 3) * 9 + (y % 3) * 3 + x % 3;
+    }
+
+    public static int getX(final int move) {
+	return MOVE_X[move];
+    }
+
+    public static int getY(final int move) {
+	return MOVE_Y[move];
+    }
+
+    public void clear() {
+	for (int b = 0; b < NR_BOARDS; b++) {
+	    mBoards[1][b] = mBoards[2][b] = 0;
+	}
+	mWon[1] = mWon[2] = 0;
+	mDrawn = 0;
+	mForced = FREE;
+	mSide = 1;
+	mWinner = NONE;
+	mPly = 0;
+	mHash = computeHash();
+    }
+
+    /**
+     * Load the position the engine sent us. The state of every microboard is derived from its cells, the forced board from the active boards in the macroboard.
+     *
+     * @param field
+     * @param side
+     *            player to move
+     */
+    public void setFromField(final Field field, final int side) {
+	clear();
+	for (int b = 0; b < NR_BOARDS; b++) {
+	    mBoards[1][b] = field.getMicroMask(b % 3, b / 3, 1);
+	    mBoards[2][b] = field.getMicroMask(b % 3, b / 3, 2);
+	    updateBoardState(b);
+	}
+	final int active = field.getActiveBoards();
+	mForced = (Integer.bitCount(active) == 1) ? Integer.numberOfTrailingZeros(active) : FREE;
+	mSide = side;
+	updateWinner();
+	mHash = computeHash();
+    }
+
+    public void copyFrom(final Position other) {
+	for (int b = 0; b < NR_BOARDS; b++) {
+	    mBoards[1][b] = other.mBoards[1][b];
+	    mBoards[2][b] = other.mBoards[2][b];
+	}
+	mWon[1] = other.mWon[1];
+	mWon[2] = other.mWon[2];
+	mDrawn = other.mDrawn;
+	mForced = other.mForced;
+	mSide = other.mSide;
+	mWinner = other.mWinner;
+	mHash = other.mHash;
+	mPly = 0; // history is not copied, the copy can only be unmade to this point
+    }
+
+    private long computeHash() {
+	long hash = Zobrist.FORCED[mForced + 1];
+	if (mSide == 2) {
+	    hash ^= Zobrist.SIDE;
+	}
+	for (int player = 1; player <= 2; player++) {
+	    for (int b = 0; b < NR_BOARDS; b++) {
+		int mask = mBoards[player][b];
+		while (mask != 0) {
+		    hash ^= Zobrist.CELLS[player][b * 9 + Integer.numberOfTrailingZeros(mask)];
+		    mask &= mask - 1;
+		}
+	    }
+	}
+	return hash;
+    }
+
+    private void updateBoardState(final int board) {
+	final int bit = 1 << board;
+	mWon[1] &= ~bit;
+	mWon[2] &= ~bit;
+	mDrawn &= ~bit;
+	if (TTTLookup.IS_WIN[mBoards[1][board]]) {
+	    mWon[1] |= bit;
+	} else if (TTTLookup.IS_WIN[mBoards[2][board]]) {
+	    mWon[2] |= bit;
+	} else if ((mBoards[1][board] | mBoards[2][board]) == TTTLookup.FULL) {
+	    mDrawn |= bit;
+	}
+    }
+
+    private void updateWinner() {
+	if (TTTLookup.IS_WIN[mWon[1]]) {
+	    mWinner = 1;
+	} else if (TTTLookup.IS_WIN[mWon[2]]) {
+	    mWinner = 2;
+	} else if (getDecidedBoards() == TTTLookup.FULL) {
+	    mWinner = DRAW;
+	} else {
+	    mWinner = NONE;
+	}
+    }
+
+    /**
+     * Play a move for the side to move. NO CHECKING IS DONE
+     */
+    public void makeMove(final int move) {
+	final int board = move / 9;
+	final int square = move - board * 9;
+	final int boardBit = 1 << board;
+	final int side = mSide;
+
+	mMoveStack[mPly] = move;
+	mForcedStack[mPly] = mForced;
+	mHashStack[mPly] = mHash;
+	mPly++;
+
+	final int mine = (mBoards[side][board] |= 1 << square);
+	if (TTTLookup.IS_WIN[mine]) {
+	    mWon[side] |= boardBit;
+	    if (TTTLookup.IS_WIN[mWon[side]]) {
+		mWinner = side;
+	    }
+	} else if ((mine | mBoards[3 - side][board]) == TTTLookup.FULL) {
+	    mDrawn |= boardBit;
+	}
+
+	final int decided = getDecidedBoards();
+	if (mWinner == NONE && decided == TTTLookup.FULL) {
+	    mWinner = DRAW;
+	}
+	int forced = square;
+	if ((decided & (1 << square)) != 0) {
+	    // a free choice with one open board left is the same as being sent there, keep the hash the same too
+	    final int open = ~decided & TTTLookup.FULL;
+	    forced = (Integer.bitCount(open) == 1) ? Integer.numberOfTrailingZeros(open) : FREE;
+	}
+	mHash ^= Zobrist.CELLS[side][move] ^ Zobrist.FORCED[mForced + 1] ^ Zobrist.FORCED[forced + 1] ^ Zobrist.SIDE;
+	mForced = forced;
+	mSide = 3 - side;
+    }
+
+    /**
+     * Take back the last move made with makeMove
+     */
+    public void unmakeMove() {
+	mPly--;
+	final int move = mMoveStack[mPly];
+	final int board = move / 9;
+	final int boardBit = 1 << board;
+	final int side = 3 - mSide;
+
+	// the board was still open before the move, so it can simply be reopened
+	mBoards[side][board] &= ~(1 << (move - board * 9));
+	mWon[side] &= ~boardBit;
+	mDrawn &= ~boardBit;
+	mForced = mForcedStack[mPly];
+	mHash = mHashStack[mPly];
+	mWinner = NONE;
+	mSide = side;
+    }
+
+    /**
+     * Fills mask with the 81-bit legal move mask: moves 0-63 in mask[0], moves 64-80 in mask[1]
+     *
+     * @return number of legal moves
+     */
+    public int getLegalMoves(final long[] mask) {
+	long low = 0, high = 0;
+	if (mWinner == NONE) {
+	    final int boards = getPlayableBoards();
+	    for (int b = 0; b < NR_BOARDS; b++) {
+		if ((boards & (1 << b)) != 0) {
+		    final long empty = getEmptyMask(b);
+		    final int shift = b * 9;
+		    if (shift < 64) {
+			low |= empty << shift;
+			if (shift > 64 - 9) { // board 7 straddles both longs
+			    high |= empty >>> (64 - shift);
+			}
+		    } else {
+			high |= empty << (shift - 64);
+		    }
+		}
+	    }
+	}
+	mask[0] = low;
+	mask[1] = high;
+	return Long.bitCount(low) + Long.bitCount(high);
+    }
+
+    /**
+     * Writes the legal moves to moves, in ascending order
+     *
+     * @return number of legal moves
+     */
+    public int generateMoves(final int[] moves) {
+	int count = 0;
+	if (mWinner == NONE) {
+	    final int boards = getPlayableBoards();
+	    for (int b = 0; b < NR_BOARDS; b++) {
+		if ((boards & (1 << b)) != 0) {
+		    int empty = getEmptyMask(b);
+		    while (empty != 0) {
+			moves[count++] = b * 9 + Integer.numberOfTrailingZeros(empty);
+			empty &= empty - 1;
+		    }
+		}
+	    }
+	}
+	return count;
+    }
+
+    /**
+     * Returns the boards the side to move may play on
+     */
+    public int getPlayableBoards() {
+	if (mForced != FREE) {
+	    return 1 << mForced;
+	}
+	return ~getDecidedBoards() & TTTLookup.FULL;
+    }
+
+    public int getEmptyMask(final int board) {
+	return ~(mBoards[1][board] | mBoards[2][board]) & TTTLookup.FULL;
+    }
+
+    /**
+     * Returns the number of empty cells on boards that are still open
+     */
+    public int getOpenCellCount() {
+	final int decided = getDecidedBoards();
+	int count = 0;
+	for (int b = 0; b < NR_BOARDS; b++) {
+	    if ((decided & (1 << b)) == 0) {
+		count += Integer.bitCount(getEmptyMask(b));
+	    }
+	}
+	return count;
+    }
+
+    public int getBoardMask(final int player, final int board) {
+	return mBoards[player][board];
+    }
+
+    public int getWonBoards(final int player) {
+	return mWon[player];
+    }
+
+    public int getDrawnBoards() {
+	return mDrawn;
+    }
+
+    public int getDecidedBoards() {
+	return mWon[1] | mWon[2] | mDrawn;
+    }
+
+    public int getForcedBoard() {
+	return mForced;
+    }
+
+    public int getSide() {
+	return mSide;
+    }
+
+    /**
+     * Returns 1 or 2 for a won game, DRAW when every board is decided without a winner and NONE while the game is still going
+     */
+    public int getWinner() {
+	return mWinner;
+    }
+
+    public boolean isGameOver() {
+	return mWinner != NONE;
+    }
+
+    public long getHash() {
+	return mHash;
+    }
+
+    public int getPly() {
+	return mPly;
+    }
+
+    /**
+     * Returns the move made at ply, counted from the last clear, setFromField or copyFrom
+     */
+    public int getMove(final int ply) {
+	return mMoveStack[ply];
+    }
+
+    /**
+     * Returns the player id on given column and row, 0 when empty
+     */
+    public int getPlayerId(final int x, final int y) {
+	final int move = toMove(x, y);
+	final int bit = 1 << (move % 9);
+	if ((mBoards[1][move / 9] & bit) != 0) {
+	    return 1;
+	}
+	if ((mBoards[2][move / 9] & bit) != 0) {
+	    return 2;
+	}
+	return 0;
+    }
+
+    /**
+     * Returns the macroboard value the engine sends for board: its winner, -1 when the side to move may play there, 0 otherwise
+     */
+    public int getMacroboardValue(final int board) {
+	final int bit = 1 << board;
+	if ((mWon[1] & bit) != 0) {
+	    return 1;
+	}
+	if ((mWon[2] & bit) != 0) {
+	    return 2;
+	}
+	return (!isGameOver() && (getPlayableBoards() & bit) != 0) ? -1 : 0;
+    }
+
+    /**
+     * Returns the field in the text format of the engine
+     */
+    public String toFieldString() {
+	final StringBuilder sb = new StringBuilder(2 * NR_CELLS);
+	for (int y = 0; y < 9; y++) {
+	    for (int x = 0; x < 9; x++) {
+		if (x > 0 || y > 0) {
+		    sb.append(',');
+		}
+		sb.append(getPlayerId(x, y));
+	    }
+	}
+	return sb.toString();
+    }
+
+    /**
+     * Returns the macroboard in the text format of the engine
+     */
+    public String toMacroboardString() {
+	final StringBuilder sb = new StringBuilder(3 * NR_BOARDS);
+	for (int b = 0; b < NR_BOARDS; b++) {
+	    if (b > 0) {
+		sb.append(',');
+	    }
+	    sb.append(getMacroboardValue(b));
+	}
+	return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+	final StringBuilder sb = new StringBuilder();
+	for (int y = 0; y < 9; y++) {
+	    for (int x = 0; x < 9; x++) {
+		final int id = getPlayerId(x, y);
+		sb.append(id == 0 ? '.' : (id == 1 ? 'X' : 'O'));
+		if (x == 2 || x == 5) {
+		    sb.append('|');
+		}
+	    }
+	    sb.append('\n');
+	    if (y == 2 || y == 5) {
+		sb.append("---+---+---\n");
+	    }
+	}
+	sb.append("side ").append(mSide).append(", board ").append(mForced);
+	return sb.toString();
+    }
+}
@@ -0,0 +1,208 @@
+package bot;
+
+/**
+ * ProofNumberSearch class
+ *
+ * Proof-number search for a forced win of the side to move, several moves deep, with a small node budget. The tree lives in flat arrays like the MCTS tree and is
+ * grown best first: always below the most proving node, the leaf that needs the least work to prove (or disprove) the root.
+ *
+ * New leaves start from their number of moves: a reply that sends the opponent to a decided board gives them a free choice of many moves, which makes it expensive
+ * to prove, while a reply that keeps them on one board is cheap. So the search follows the forcing lines that the sending rule allows, and a free choice only gets
+ * searched when nothing forcing works.
+ *
+ * Only wins count, a draw is the same as a loss here.
+ *
+ * @author stilkin
+ */
+public class ProofNumberSearch {
+    public static final int DEFAULT_NODES = 20000;
+    private static final int INFINITY = 1 << 28;
+
+    private final int mCapacity;
+    private final int[] mProof;
+    private final int[] mDisproof;
+    private final int[] mParent;
+    private final int[] mFirstChild; // 0: not expanded
+    private final byte[] mChildCount;
+    private final byte[] mMove;
+    private int mSize;
+
+    private final Position mPosition = new Position();
+    private final int[] mMoves = new int[Position.NR_CELLS];
+    private final int[] mReplies = new int[Position.NR_CELLS];
+    private int mRootSide;
+    private long mIterations;
+    private volatile boolean mStopped;
+
+    public ProofNumberSearch(final int capacity) {
+	mCapacity = capacity;
+	mProof = new int[capacity];
+	mDisproof = new int[capacity];
+	mParent = new int[capacity];
+	mFirstChild = new int[capacity];
+	mChildCount = new byte[capacity];
+	mMove = new byte[capacity];
+    }
+
+    /**
+     * Look for a forced win of the side to move, until the pool is full or the deadline passes
+     *
+     * @return the winning move, -1 when no win was proven
+     */
+    public int findWin(final Position position, final long deadline) {
+	mPosition.copyFrom(position);
+	mRootSide = position.getSide();
+	mIterations = 0;
+	mStopped = false;
+	mSize = 1;
+	mFirstChild[0] = 0;
+	mChildCount[0] = 0;
+	mParent[0] = -1;
+	mProof[0] = 1;
+	mDisproof[0] = 1;
+	if (position.isGameOver()) {
+	    return -1;
+	}
+
+	while (mProof[0] != 0 && mDisproof[0] != 0) {
+	    if ((mIterations & 0xFF) == 0 && (mStopped || System.nanoTime() >= deadline)) {
+		break;
+	    }
+	    mIterations++;
+
+	    // select the most proving node
+	    int node = 0;
+	    while (mFirstChild[node] != 0) {
+		node = selectChild(node);
+		mPosition.makeMove(mMove[node]);
+	    }
+	    if (!expand(node)) {
+		break; // pool is full
+	    }
+
+	    // update the proof numbers up to the root
+	    while (node >= 0) {
+		update(node);
+		if (node != 0) {
+		    mPosition.unmakeMove();
+		}
+		node = mParent[node];
+	    }
+	}
+
+	if (mProof[0] != 0) {
+	    return -1;
+	}
+	final int first = mFirstChild[0];
+	for (int c = first; c < first + mChildCount[0]; c++) {
+	    if (mProof[c] == 0) {
+		return mMove[c];
+	    }
+	}
+	return -1;
+    }
+
+    private boolean isOrNode() {
+	return mPosition.getSide() == mRootSide;
+    }
+
+    private int selectChild(final int node) {
+	final int first = mFirstChild[node];
+	final int last = first + mChildCount[node];
+	int best = first;
+	if (isOrNode()) {
+	    for (int c = first + 1; c < last; c++) {
+		if (mProof[c] < mProof[best]) {
+		    best = c;
+		}
+	    }
+	} else {
+	    for (int c = first + 1; c < last; c++) {
+		if (mDisproof[c] < mDisproof[best]) {
+		    best = c;
+		}
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * Add the children of node, position is the position of node
+     *
+     * @return false when the pool is full
+     */
+    private boolean expand(final int node) {
+	final int nrMoves = mPosition.generateMoves(mMoves);
+	if (mSize + nrMoves > mCapacity) {
+	    return false;
+	}
+	final int first = mSize;
+	for (int i = 0; i < nrMoves; i++) {
+	    final int child = first + i;
+	    mMove[child] = (byte) mMoves[i];
+	    mParent[child] = node;
+	    mFirstChild[child] = 0;
+	    mChildCount[child] = 0;
+
+	    mPosition.makeMove(mMoves[i]);
+	    final int winner = mPosition.getWinner();
+	    if (winner == mRootSide) {
+		mProof[child] = 0;
+		mDisproof[child] = INFINITY;
+	    } else if (winner != Position.NONE) {
+		mProof[child] = INFINITY;
+		mDisproof[child] = 0;
+	    } else {
+		final int replies = mPosition.generateMoves(mReplies);
+		if (isOrNode()) {
+		    mProof[child] = 1;
+		    mDisproof[child] = replies;
+		} else {
+		    mProof[child] = replies;
+		    mDisproof[child] = 1;
+		}
+	    }
+	    mPosition.unmakeMove();
+	}
+	mSize += nrMoves;
+	mChildCount[node] = (byte) nrMoves;
+	mFirstChild[node] = first;
+	return true;
+    }
+
+    /**
+     * Proof and disproof number of node from its children: at our moves one proven child is enough, at theirs all children have to be proven
+     */
+    private void update(final int node) {
+	final int first = mFirstChild[node];
+	final int last = first + mChildCount[node];
+	int min = INFINITY, sum = 0;
+	if (isOrNode()) {
+	    for (int c = first; c < last; c++) {
+		min = Math.min(min, mProof[c]);
+		sum = Math.min(INFINITY, sum + mDisproof[c]);
+	    }
+	    mProof[node] = min;
+	    mDisproof[node] = sum;
+	} else {
+	    for (int c = first; c < last; c++) {
+		min = Math.min(min, mDisproof[c]);
+		sum = Math.min(INFINITY, sum + mProof[c]);
+	    }
+	    mProof[node] = sum;
+	    mDisproof[node] = min;
+	}
+    }
+
+    public void stop() {
+	mStopped = true;
+    }
+
+    public long getIterations() {
+	return mIterations;
+    }
+
+    public int getNodeCount() {
+	return mSize;
+    }
+}
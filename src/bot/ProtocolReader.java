@@ -0,0 +1,166 @@
+package bot;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * ProtocolReader class
+ *
+ * Reads the engine protocol straight from the bytes of an InputStream. A line is kept in a reusable buffer and split into space separated tokens (start and end
+ * offsets only), so reading a line, comparing its words and parsing its numbers creates no Strings and no garbage.
+ *
+ * @author stilkin
+ */
+public class ProtocolReader {
+    private static final int BUFFER_SIZE = 1 << 13;
+    private static final int MAX_TOKENS = 8;
+
+    private final InputStream mIn;
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private int mBufferPos = 0;
+    private int mBufferEnd = 0;
+
+    private byte[] mLine = new byte[512];
+    private int mLineLength = 0;
+    private final int[] mTokenStart = new int[MAX_TOKENS];
+    private final int[] mTokenEnd = new int[MAX_TOKENS];
+    private int mTokenCount = 0;
+
+    public ProtocolReader(final InputStream in) {
+	mIn = in;
+    }
+
+    /**
+     * Read the next line and split it in tokens
+     *
+     * @return false at the end of the stream
+     * @throws IOException
+     */
+    public boolean nextLine() throws IOException {
+	mLineLength = 0;
+	boolean readSomething = false;
+	while (true) {
+	    if (mBufferPos == mBufferEnd) {
+		mBufferEnd = mIn.read(mBuffer, 0, BUFFER_SIZE);
+		mBufferPos = 0;
+		if (mBufferEnd <= 0) {
+		    mBufferEnd = 0;
+		    if (!readSomething) {
+			return false;
+		    }
+		    break;
+		}
+	    }
+	    readSomething = true;
+	    final byte b = mBuffer[mBufferPos++];
+	    if (b == '\n') {
+		break;
+	    }
+	    if (b != '\r') {
+		if (mLineLength == mLine.length) {
+		    final byte[] longer = new byte[mLine.length * 2];
+		    System.arraycopy(mLine, 0, longer, 0, mLineLength);
+		    mLine = longer;
+		}
+		mLine[mLineLength++] = b;
+	    }
+	}
+	tokenize();
+	return true;
+    }
+
+    private void tokenize() {
+	mTokenCount = 0;
+	int i = 0;
+	while (i < mLineLength && mTokenCount < MAX_TOKENS) {
+	    while (i < mLineLength && mLine[i] == ' ') {
+		i++;
+	    }
+	    if (i == mLineLength) {
+		break;
+	    }
+	    mTokenStart[mTokenCount] = i;
+	    while (i < mLineLength && mLine[i] != ' ') {
+		i++;
+	    }
+	    mTokenEnd[mTokenCount++] = i;
+	}
+    }
+
+    public int getTokenCount() {
+	return mTokenCount;
+    }
+
+    /**
+     * Returns true when token index is exactly word (the protocol is plain ASCII)
+     */
+    public boolean isToken(final int index, final String word) {
+	if (index >= mTokenCount) {
+	    return false;
+	}
+	final int start = mTokenStart[index];
+	final int length = mTokenEnd[index] - start;
+	if (length != word.length()) {
+	    return false;
+	}
+	for (int i = 0; i < length; i++) {
+	    if (mLine[start + i] != word.charAt(i)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Parse token index as a (possibly negative) number
+     */
+    public int getInt(final int index) {
+	if (index >= mTokenCount) {
+	    throw new NumberFormatException("Missing token " + index);
+	}
+	return parseInt(mLine, mTokenStart[index], mTokenEnd[index]);
+    }
+
+    /**
+     * The raw line, valid until the next call to nextLine
+     */
+    public byte[] getLine() {
+	return mLine;
+    }
+
+    public int getTokenStart(final int index) {
+	return mTokenStart[index];
+    }
+
+    public int getTokenEnd(final int index) {
+	return mTokenEnd[index];
+    }
+
+    /**
+     * Only for logging and error messages: this one does allocate
+     */
+    public String getToken(final int index) {
+	return new String(mLine, mTokenStart[index], mTokenEnd[index] - mTokenStart[index]);
+    }
+
+    public static int parseInt(final byte[] data, final int from, final int to) {
+	int i = from;
+	boolean negative = false;
+	if (i < to && data[i] == '-') {
+	    negative = true;
+	    i++;
+	}
+	if (i == to) {
+	    throw new NumberFormatException("Empty number");
+	}
+	int value = 0;
+	for (; i < to; i++) {
+	    final int digit = data[i] - '0';
+	    if (digit < 0 || digit > 9) {
+		throw new NumberFormatException("Bad character in number: " + (char) data[i]);
+	    }
+	    value = value * 10 + digit;
+	}
+	return negative ? -value : value;
+    }
+}
@@ -0,0 +1,52 @@
+package bot;
+
+/**
+ * A search that picks a move for a {@link Position}. Engines keep their buffers between calls, so one instance must only be used by one thread at a time.
+ *
+ * @author stilkin
+ */
+public interface SearchEngine {
+
+    /**
+     * Search until the deadline and return the best move found for the side to move.
+     *
+     * @param position
+     *            position to search, it is not modified
+     * @param deadline
+     *            System.nanoTime() at which the search has to return
+     * @return the move (see {@link Position}), -1 when there are no legal moves
+     */
+    int findMove(Position position, long deadline);
+
+    /**
+     * Ask a running search to return as soon as possible. Can be called from any thread.
+     */
+    void stop();
+
+    /**
+     * Release the threads of the engine, it can not search anymore afterwards
+     */
+    void close();
+
+    /**
+     * Returns the score of the last search, from the point of view of the side that was to move
+     */
+    int getScore();
+
+    /**
+     * Returns the depth reached by the last search
+     */
+    int getDepth();
+
+    /**
+     * Returns the number of nodes (or playouts) of the last search
+     */
+    long getNodeCount();
+
+    /**
+     * Writes the line of play the last search expects, starting with its move, to moves
+     *
+     * @return the number of moves written, at most moves.length
+     */
+    int getPrincipalVariation(int[] moves);
+}
@@ -2,44 +2,51 @@ package bot;
 
 import java.util.ArrayList;
 
+/**
+ * A single 3x3 board. Players 1 and 2 are kept as 9-bit masks so the line checks are table lookups (see {@link TTTLookup}), any other value (the -1 and 9 markers of
+ * the macroboard) is only remembered for getMark and hasMark.
+ */
 public class TTTField {
     private final int MAX = 3;
     private final int COLS = MAX, ROWS = MAX;
-    private final int[][] gameBoard = new int[COLS][ROWS];
+    private final int[] gameBoard = new int[COLS * ROWS];
+    private final int[] playerMasks = new int[3];
+    private int filledMask = 0; // cells != 0
+    private int availableMask = TTTLookup.FULL; // cells <= 0
     private int totalMarks = 0;
 
     /**
      * Put a mark on the board. NO CHECKING IS DONE
      */
     public void setMark(final int x, final int y, final int mark) {
-	gameBoard[x][y] = mark;
+	setCell(y * COLS + x, mark);
 	totalMarks++;
     }
 
     public boolean isValidMove(final int x, final int y) {
-	return (gameBoard[x][y] == 0);
+	return (filledMask & TTTLookup.bit(x, y)) == 0;
     }
-    
+
     public boolean isValidMove(final Move move) {
-	return (gameBoard[move.mX][move.mY] == 0);
+	return isValidMove(move.mX, move.mY);
     }
 
     /**
      * Remove a mark from the board. NO CHECKING IS DONE
      */
     public void removeMark(final int x, final int y) {
-	if (gameBoard[x][y] != 0) {
+	if ((filledMask & TTTLookup.bit(x, y)) != 0) {
 	    totalMarks--;
 	}
-	gameBoard[x][y] = 0;
+	setCell(y * COLS + x, 0);
     }
 
     public boolean hasMark(final int x, final int y, final int mark) {
-	return (gameBoard[x][y] == mark);
+	return (gameBoard[y * COLS + x] == mark);
     }
 
     public int getMark(final int x, final int y) {
-	return gameBoard[x][y];
+	return gameBoard[y * COLS + x];
     }
 
     /*
@@ -49,14 +56,74 @@ public class TTTField {
 	totalMarks = 0;
 	for (int y = 0; y < ROWS; y++) {
 	    for (int x = 0; x < COLS; x++) {
-		gameBoard[x][y] = newBoard[x][y];
-		if (gameBoard[x][y] != 0) {
+		setCell(y * COLS + x, newBoard[x][y]);
+		if (newBoard[x][y] != 0) {
 		    totalMarks++;
 		}
 	    }
 	}
     }
 
+    private void setCell(final int cell, final int mark) {
+	final int bit = 1 << cell;
+	final int old = gameBoard[cell];
+	if (old == 1 || old == 2) {
+	    playerMasks[old] &= ~bit;
+	}
+	gameBoard[cell] = mark;
+	if (mark == 1 || mark == 2) {
+	    playerMasks[mark] |= bit;
+	}
+	if (mark != 0) {
+	    filledMask |= bit;
+	} else {
+	    filledMask &= ~bit;
+	}
+	if (mark <= 0) {
+	    availableMask |= bit;
+	} else {
+	    availableMask &= ~bit;
+	}
+    }
+
+    /**
+     * Returns the 9-bit mask of the given player, 0 for anything but 1 or 2
+     */
+    public int getMask(final int player) {
+	if (player == 1 || player == 2) {
+	    return playerMasks[player];
+	}
+	return 0;
+    }
+
+    /**
+     * Returns the base-3 code of the board for {@link MicroTable}, cells with other marks than 1 or 2 count as empty
+     */
+    public int getCode() {
+	return MicroTable.code(playerMasks[1], playerMasks[2]);
+    }
+
+    /**
+     * Returns the mask of cells that are still 0
+     */
+    public int getEmptyMask() {
+	return ~filledMask & TTTLookup.FULL;
+    }
+
+    /**
+     * Returns the mask of cells that are 0 or below (on the macroboard: the boards that are still being played)
+     */
+    public int getAvailableMask() {
+	return availableMask;
+    }
+
+    /**
+     * Returns the mask of empty cells on which player completes three in a row
+     */
+    public int getWinningSquares(final int player) {
+	return TTTLookup.WIN_SQUARES[getMask(player)] & getEmptyMask();
+    }
+
     public boolean isFull() {
 	return (totalMarks == ROWS * COLS);
     }
@@ -64,229 +131,118 @@ public class TTTField {
     public ArrayList<Move> getAvailableMoves() {
 	final ArrayList<Move> moves = new ArrayList<Move>();
 
-	for (int y = 0; y < ROWS; y++) {
-	    for (int x = 0; x < COLS; x++) {
-		if (gameBoard[x][y] <= 0) {
-		    moves.add(new Move(x, y));
-		}
+	for (int cell = 0; cell < COLS * ROWS; cell++) {
+	    if ((availableMask & (1 << cell)) != 0) {
+		moves.add(new Move(cell % COLS, cell / COLS));
 	    }
 	}
 
 	return moves;
     }
-    
-    public boolean hasThreeInARow(final int player) {
-	if (hasHorizontalThree(player) >= 0) {
-	    return true;
-	}
-	if (hasVerticaThree(player) >= 0) {
-	    return true;
-	}
-	if (hasDiagonalThree(player) >= 0) {
-	    return true;
-	}
 
-	return false;
+    public boolean hasThreeInARow(final int player) {
+	return TTTLookup.IS_WIN[getMask(player)];
     }
 
     /**
      * Returns the first col for which this player has 3 in a row, -1 if none are present
-     * 
+     *
      * @param player
      * @return
      */
     public int hasVerticaThree(final int player) {
-	for (int x = 0; x < COLS; x++) {
-	    int count = 0;
-	    for (int y = 0; y < ROWS; y++) {
-		if (gameBoard[x][y] == player) {
-		    count++;
-		    if (count == MAX) {
-			return x;
-		    }
-		} else {
-		    count = 0;
-		}
-	    }
-	}
-	return -1;
+	return TTTLookup.firstLine(TTTLookup.LINES_WITH[3][getMask(player)], TTTLookup.VERTICAL_LINES);
     }
 
     /**
      * Returns the first row for which this player has 3 in a row, -1 if none are present
-     * 
+     *
      * @param player
      * @return
      */
     public int hasHorizontalThree(final int player) {
-	for (int y = 0; y < ROWS; y++) {
-	    int count = 0;
-	    for (int x = 0; x < COLS; x++) {
-		if (gameBoard[x][y] == player) {
-		    count++;
-		    if (count == MAX) {
-			return x;
-		    }
-		} else {
-		    count = 0;
-		}
-	    }
-	}
-	return -1;
+	return TTTLookup.firstLine(TTTLookup.LINES_WITH[3][getMask(player)], TTTLookup.HORIZONTAL_LINES);
     }
 
     /**
-     * Returns the number 3 if either diagonal has 3 in a row, -1 if none are present
-     * 
+     * Returns 0 (\) or 1 (/) if either diagonal has 3 in a row, -1 if none are present
+     *
      * @param player
      * @return
      */
     public int hasDiagonalThree(final int player) {
-	int countNWSE = 0; // check one diagonal -> \
-	int countNESW = 0; // check other diagonal -> /
-	for (int i = 0; i < MAX; i++) {
-	    if (gameBoard[i][i] == player) {
-		countNWSE++;
-		if (countNWSE == MAX) {
-		    return i;
-		}
-	    } else {
-		countNWSE = 0;
-	    }
-	    if (gameBoard[(MAX - 1) - i][i] == player) {
-		countNESW++;
-		if (countNESW == MAX) {
-		    return i;
-		}
-	    } else {
-		countNESW = 0;
-	    }
-	}
-	return -1;
+	return TTTLookup.firstLine(TTTLookup.LINES_WITH[3][getMask(player)], TTTLookup.DIAGONAL_LINES);
     }
 
     /*
      * Checks if the field has some in line (with gaps)
      */
     public boolean hasSomeInLine(final int player, final int max) {
+	return getLinesWithSome(player, max) != 0;
+    }
 
-	if (hasSomeOnAVertical(player, max) >= 0) {
-	    return true;
-	}
-
-	if (hasSomeOnAHorizontal(player, max) >= 0) {
-	    return true;
-	}
-
-	if (hasSomeOnADiagonal(player, max) >= 0) {
-	    return true;
-	}
-
-	return false;
+    private int getLinesWithSome(final int player, final int max) {
+	return TTTLookup.linesWithSome(getMask(player), getMask(3 - player), max);
     }
 
     /**
-     * Returns the first col for which this player has 3 in a row, -1 if none are present
-     * 
+     * Returns the first col for which this player has some in line, -1 if none are present
+     *
      * @param player
      * @return
      */
     public int hasSomeOnAVertical(final int player, final int max) {
-	for (int x = 0; x < COLS; x++) {
-	    int count = 0;
-	    for (int y = 0; y < ROWS; y++) {
-		if (gameBoard[x][y] == player) {
-		    count++;
-		    if (count >= max) {
-			return x;
-		    }
-		} else if (gameBoard[x][y] == 3 - player) { // blocked by opponent
-		    count = 0;
-		}
-	    }
-	}
-	return -1;
+	return TTTLookup.firstLine(getLinesWithSome(player, max), TTTLookup.VERTICAL_LINES);
     }
 
     /**
-     * Returns the first row for which this player has 3 in a row, -1 if none are present
-     * 
+     * Returns the first row for which this player has some in line, -1 if none are present
+     *
      * @param player
      * @return
      */
     public int hasSomeOnAHorizontal(final int player, final int max) {
-	for (int y = 0; y < ROWS; y++) {
-	    int count = 0;
-	    for (int x = 0; x < COLS; x++) {
-		if (gameBoard[x][y] == player) {
-		    count++;
-		    if (count >= max) {
-			return x;
-		    }
-		} else if (gameBoard[x][y] == 3 - player) { // blocked by opponent
-		    count = 0;
-		}
-	    }
-	}
-	return -1;
+	return TTTLookup.firstLine(getLinesWithSome(player, max), TTTLookup.HORIZONTAL_LINES);
     }
 
     /**
-     * Returns the number 3 if either diagonal has 3 in a row, -1 if none are present
-     * 
+     * Returns 0 (\) or 1 (/) if either diagonal has some in line, -1 if none are present
+     *
      * @param player
      * @return
      */
     public int hasSomeOnADiagonal(final int player, final int max) {
-	int countNWSE = 0; // check one diagonal -> \
-	int countNESW = 0; // check other diagonal -> /
-	for (int i = 0; i < MAX; i++) {
-	    if (gameBoard[i][i] == player) {
-		countNWSE++;
-		if (countNWSE >= max) {
-		    return i;
-		}
-	    } else if (gameBoard[i][i] == 3 - player) { // blocked by opponent
-		countNWSE = 0;
-	    }
-	    if (gameBoard[(MAX - 1) - i][i] == player) {
-		countNESW++;
-		if (countNESW >= max) {
-		    return i;
-		}
-	    } else if (gameBoard[(MAX - 1) - i][i] == 3 - player) { // blocked by opponent
-		countNESW = 0;
-	    }
-	}
-	return -1;
+	return TTTLookup.firstLine(getLinesWithSome(player, max), TTTLookup.DIAGONAL_LINES);
     }
 
     @Override
     public String toString() {
-	String prettyStr = " ";
+	final StringBuilder prettyStr = new StringBuilder(COLS * ROWS * 3);
+	prettyStr.append(' ');
 	int counter = 0;
 	for (int y = 0; y < ROWS; y++) {
 	    for (int x = 0; x < COLS; x++) {
 		if (counter > 0) {
-		    prettyStr += " ";
+		    prettyStr.append(' ');
 		}
-		prettyStr += gameBoard[x][y];
+		prettyStr.append(gameBoard[y * COLS + x]);
 		counter++;
 	    }
-	    prettyStr += '\n';
+	    prettyStr.append('\n');
 	}
-	return prettyStr;
+	return prettyStr.toString();
     }
 
     /* Jims code */
 
     public void clearBoard() {
 	totalMarks = 0;
-	for (int x = 0; x < COLS; x++) {
-	    for (int y = 0; y < ROWS; y++) {
-		gameBoard[x][y] = 0;
-	    }
+	for (int cell = 0; cell < COLS * ROWS; cell++) {
+	    gameBoard[cell] = 0;
 	}
+	playerMasks[1] = playerMasks[2] = 0;
+	filledMask = 0;
+	availableMask = TTTLookup.FULL;
     }
 
 }
@@ -0,0 +1,114 @@
+package bot;
+
+/**
+ * Precomputed tables for a single 3x3 board stored as a 9-bit mask.
+ *
+ * Cell (x, y) lives on bit y * 3 + x, so the bit order matches the order in which the engine sends the field. Every table has 512 entries and is indexed by the mask
+ * of one player.
+ *
+ * @author stilkin
+ */
+public final class TTTLookup {
+    public static final int SIZE = 512;
+    public static final int FULL = SIZE - 1;
+    public static final int CENTER = 1 << 4;
+    public static final int CORNERS = (1 << 0) | (1 << 2) | (1 << 6) | (1 << 8);
+    public static final int SIDES = (1 << 1) | (1 << 3) | (1 << 5) | (1 << 7);
+
+    /** The 8 lines, cells in the order the old loops scanned them: columns 0-2, rows 3-5, diagonals 6-7 */
+    public static final int[][] LINE_CELLS = { { 0, 3, 6 }, { 1, 4, 7 }, { 2, 5, 8 }, // verticals
+	    { 0, 1, 2 }, { 3, 4, 5 }, { 6, 7, 8 }, // horizontals
+	    { 0, 4, 8 }, { 2, 4, 6 } }; // diagonals: \ and /
+    public static final int NR_LINES = LINE_CELLS.length;
+    public static final int VERTICAL_LINES = 0x07, HORIZONTAL_LINES = 0x38, DIAGONAL_LINES = 0xC0;
+    public static final int[] LINE_MASKS = new int[NR_LINES];
+
+    /** LINES_WITH[k][mask]: set of lines (one bit per line) holding at least k cells of mask */
+    public static final int[][] LINES_WITH = new int[4][SIZE];
+    /** Lines where mask holds both ends but not the middle */
+    public static final int[] GAPPED_LINES = new int[SIZE];
+    /** Lines whose middle cell is in mask */
+    public static final int[] MIDDLE_LINES = new int[SIZE];
+    /** Cells that complete a line for mask (occupancy of the other player is not taken into account) */
+    public static final int[] WIN_SQUARES = new int[SIZE];
+    public static final boolean[] IS_WIN = new boolean[SIZE];
+
+    static {
+	for (int l = 0; l < NR_LINES; l++) {
+	    for (int c = 0; c < 3; c++) {
+		LINE_MASKS[l] |= 1 << LINE_CELLS[l][c];
+	    }
+	}
+
+	for (int mask = 0; mask < SIZE; mask++) {
+	    for (int l = 0; l < NR_LINES; l++) {
+		final int count = Integer.bitCount(mask & LINE_MASKS[l]);
+		for (int k = 0; k <= count; k++) {
+		    LINES_WITH[k][mask] |= 1 << l;
+		}
+		final int[] cells = LINE_CELLS[l];
+		final boolean first = (mask & (1 << cells[0])) != 0;
+		final boolean middle = (mask & (1 << cells[1])) != 0;
+		final boolean last = (mask & (1 << cells[2])) != 0;
+		if (first && last && !middle) {
+		    GAPPED_LINES[mask] |= 1 << l;
+		}
+		if (middle) {
+		    MIDDLE_LINES[mask] |= 1 << l;
+		}
+	    }
+	    IS_WIN[mask] = LINES_WITH[3][mask] != 0;
+	}
+
+	for (int mask = 0; mask < SIZE; mask++) {
+	    for (int c = 0; c < 9; c++) {
+		final int bit = 1 << c;
+		if ((mask & bit) == 0 && IS_WIN[mask | bit]) {
+		    WIN_SQUARES[mask] |= bit;
+		}
+	    }
+	}
+    }
+
+    private TTTLookup() {}
+
+    public static int bit(final int x, final int y) {
+	return 1 << (y * 3 + x);
+    }
+
+    /**
+     * Lines on which player has at least max marks without the opponent sitting in between them. A mark of the opponent in the middle only breaks a line when the player
+     * needs both ends, which is how the old counting loops behaved.
+     *
+     * @param mine
+     *            mask of the player
+     * @param theirs
+     *            mask of the opponent
+     * @param max
+     *            number of marks to look for
+     * @return set of lines, one bit per line
+     */
+    public static int linesWithSome(final int mine, final int theirs, final int max) {
+	if (max <= 1) {
+	    return LINES_WITH[1][mine];
+	}
+	if (max == 2) {
+	    return LINES_WITH[2][mine] & ~(GAPPED_LINES[mine] & MIDDLE_LINES[theirs]);
+	}
+	if (max == 3) {
+	    return LINES_WITH[3][mine];
+	}
+	return 0;
+    }
+
+    /**
+     * Index of the lowest line in a set of lines, relative to its group (column, row or diagonal index), -1 if the set is empty
+     */
+    public static int firstLine(final int lines, final int group) {
+	final int inGroup = lines & group;
+	if (inGroup == 0) {
+	    return -1;
+	}
+	return Integer.numberOfTrailingZeros(inGroup) - Integer.numberOfTrailingZeros(group);
+    }
+}
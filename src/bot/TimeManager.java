@@ -0,0 +1,52 @@
+package bot;
+
+/**
+ * TimeManager class
+ *
+ * Turns the time bank the engine reports with every "action move" into a deadline for the search. Each turn spends the time we get per move plus a share of what is
+ * left in the bank, spread over the moves we still expect to make.
+ *
+ * @author stilkin
+ */
+public class TimeManager {
+    private static final int SAFETY_MARGIN = 30; // ms for parsing, output and the odd GC pause
+    private static final int MIN_BUDGET = 5;
+    private static final int MIN_MOVES_LEFT = 3;
+
+    private int mTimebank = 10000;
+    private int mTimePerMove = 500;
+
+    public void setTimebank(final int timebank) {
+	mTimebank = timebank;
+    }
+
+    public int getTimebank() {
+	return mTimebank;
+    }
+
+    public void setTimePerMove(final int timePerMove) {
+	mTimePerMove = timePerMove;
+    }
+
+    public int getTimePerMove() {
+	return mTimePerMove;
+    }
+
+    /**
+     * Returns the number of ms the search may use this turn
+     *
+     * @param timeLeft
+     *            ms left in our time bank, negative when unknown
+     * @param openCells
+     *            empty cells on boards that are still open
+     */
+    public int getBudget(int timeLeft, final int openCells) {
+	if (timeLeft < 0) {
+	    timeLeft = mTimebank;
+	}
+	final int movesLeft = Math.max(MIN_MOVES_LEFT, (openCells + 1) / 2);
+	int budget = mTimePerMove + Math.max(0, timeLeft - mTimePerMove) / movesLeft;
+	budget = Math.min(budget, timeLeft / 2);
+	return Math.max(MIN_BUDGET, budget - SAFETY_MARGIN);
+    }
+}
@@ -0,0 +1,384 @@
+package bot;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tournament class
+ *
+ * Self play without the engine: a referee that keeps the game in a Position (so the forced board rules are those of the search), hands every bot a Field and its time
+ * bank and calls makeTurn directly. Games run on a pool of threads, every thread has its own pair of bots and plays its games one after the other; the bots of a
+ * side share their transposition tables, opening book, weights and stats and record files. Games come in pairs: the same random opening, once with each bot as
+ * player 1.
+ *
+ * A bot that plays an illegal move, returns no move, throws or runs out of its time bank loses the game.
+ *
+ * With --record=FILE every game is appended to FILE as a {@link GameRecord}, opening moves included.
+ *
+ * The result is given from the point of view of bot A: wins, draws and losses, the Elo difference with a 95% interval and an SPRT for H0: elo = elo0 against H1: elo
+ * = elo1 (the tournament stops as soon as one of them is accepted, unless --sprt_stop=false).
+ *
+ * Usage: java -cp bin bot.Tournament --a=engine=alphabeta,hash=8 --b=engine=mcts,mcts_nodes=262144 [--name=value ...]
+ *
+ * @author stilkin
+ */
+public class Tournament {
+    private static final int REPORT_INTERVAL = 100; // games between two progress lines
+    private static final double SPRT_ALPHA = 0.05, SPRT_BETA = 0.05;
+    private static final double Z_95 = 1.96;
+    private static final int WIN = 0, DRAW = 1, LOSS = 2;
+
+    // options
+    private String mConfigA = "engine=alphabeta";
+    private String mConfigB = "engine=heuristic";
+    private int mGames = 1000;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private int mTimebank = 1000;
+    private int mTimePerMove = 10;
+    private int mOpening = 4; // random plies before the bots take over
+    private double mElo0 = 0, mElo1 = 5;
+    private boolean mSprtStop = true;
+    private long mSeed = System.nanoTime();
+    private String mRecord = null;
+
+    // results, for bot A
+    private final AtomicInteger mNextGame = new AtomicInteger();
+    private final int[] mResults = new int[3];
+    private int mTimeouts, mIllegal, mPlayed;
+    private volatile boolean mStopped = false;
+    private long mStart;
+    private GameRecordWriter mRecorder;
+
+    public static void main(final String[] args) throws InterruptedException, IOException {
+	final Tournament tournament = new Tournament();
+	Log.setLevel(Log.WARN);
+	for (final String arg : args) {
+	    final int eq = arg.indexOf('=');
+	    if (!arg.startsWith("--") || eq < 0) {
+		throw new IllegalArgumentException("Expected --name=value: " + arg);
+	    }
+	    tournament.set(arg.substring(2, eq), arg.substring(eq + 1));
+	}
+	tournament.run();
+	System.out.println(tournament.getReport());
+    }
+
+    public void set(final String name, final String value) {
+	if (name.equals("a")) {
+	    mConfigA = value;
+	} else if (name.equals("b")) {
+	    mConfigB = value;
+	} else if (name.equals("games")) {
+	    mGames = Integer.parseInt(value);
+	} else if (name.equals("threads")) {
+	    mThreads = value.equals("auto") ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(value);
+	} else if (name.equals("timebank")) {
+	    mTimebank = Integer.parseInt(value);
+	} else if (name.equals("time_per_move")) {
+	    mTimePerMove = Integer.parseInt(value);
+	} else if (name.equals("opening")) {
+	    mOpening = Integer.parseInt(value);
+	} else if (name.equals("elo0")) {
+	    mElo0 = Double.parseDouble(value);
+	} else if (name.equals("elo1")) {
+	    mElo1 = Double.parseDouble(value);
+	} else if (name.equals("sprt_stop")) {
+	    mSprtStop = Boolean.parseBoolean(value);
+	} else if (name.equals("seed")) {
+	    mSeed = Long.parseLong(value);
+	} else if (name.equals("record")) {
+	    mRecord = value;
+	} else if (name.equals("log")) {
+	    Log.setLevel(Log.parseLevel(value));
+	} else {
+	    throw new IllegalArgumentException("Unknown option: " + name);
+	}
+    }
+
+    /**
+     * Parse a bot configuration given as name=value pairs separated by commas
+     */
+    static BotConfig parseBotConfig(final String options) {
+	final BotConfig config = new BotConfig();
+	for (final String option : options.split(",")) {
+	    final int eq = option.indexOf('=');
+	    if (eq < 0) {
+		throw new IllegalArgumentException("Expected name=value: " + option);
+	    }
+	    config.set(option.substring(0, eq), option.substring(eq + 1));
+	}
+	return config;
+    }
+
+    /**
+     * Play all games, returns when they are done or the SPRT has a verdict
+     */
+    public void run() throws InterruptedException, IOException {
+	mRecorder = (mRecord != null) ? GameRecordWriter.open(mRecord) : null;
+	final BotConfig configA = parseBotConfig(mConfigA);
+	final BotConfig configB = parseBotConfig(mConfigB);
+	final int threads = Math.max(1, Math.min(mThreads, (mGames + 1) / 2));
+	System.out.println("Tournament: A [" + mConfigA + "] against B [" + mConfigB + "], " + mGames + " games on " + threads + " threads, time bank " + mTimebank
+		+ " ms + " + mTimePerMove + " ms per move");
+
+	final ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+	    private final AtomicInteger mCount = new AtomicInteger();
+
+	    @Override
+	    public Thread newThread(final Runnable runnable) {
+		final Thread thread = new Thread(runnable, "referee-" + mCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+	// one set of tables, book, weights and stats and record files per side, every thread has bots of its own that use them
+	final BotStarter sharedA = new BotStarter(configA);
+	final BotStarter sharedB = new BotStarter(configB);
+	final CountDownLatch done = new CountDownLatch(threads);
+	mStart = System.nanoTime();
+	for (int t = 0; t < threads; t++) {
+	    final BotStarter botA = (t == 0) ? sharedA : new BotStarter(sharedA);
+	    final BotStarter botB = (t == 0) ? sharedB : new BotStarter(sharedB);
+	    pool.execute(new Runnable() {
+		@Override
+		public void run() {
+		    try {
+			playGames(botA, botB);
+			botA.finishGame();
+			botB.finishGame();
+		    } finally {
+			botA.close();
+			botB.close();
+			done.countDown();
+		    }
+		}
+	    });
+	}
+	done.await();
+	pool.shutdown();
+	if (mRecorder != null) {
+	    mRecorder.close();
+	}
+    }
+
+    /**
+     * Keep taking pairs of games until there are none left
+     */
+    private void playGames(final BotStarter botA, final BotStarter botB) {
+	final Referee referee = new Referee();
+	final Position opening = new Position();
+	final int[] moves = new int[Position.NR_CELLS];
+	while (!mStopped) {
+	    final int pair = mNextGame.getAndAdd(2);
+	    if (pair >= mGames) {
+		return;
+	    }
+	    final FastRandom random = new FastRandom(mSeed + pair);
+	    opening.clear();
+	    for (int ply = 0; ply < mOpening && !opening.isGameOver(); ply++) {
+		final int nrMoves = opening.generateMoves(moves);
+		opening.makeMove(moves[random.nextInt(nrMoves)]);
+	    }
+	    addResult(referee.play(opening, botA, botB), referee, 1);
+	    if (pair + 1 < mGames && !mStopped) {
+		addResult(referee.play(opening, botB, botA), referee, 2);
+	    }
+	}
+    }
+
+    private synchronized void addResult(final int winner, final Referee referee, final int sideA) {
+	if (winner == Position.DRAW) {
+	    mResults[DRAW]++;
+	} else {
+	    mResults[winner == sideA ? WIN : LOSS]++;
+	}
+	mTimeouts += referee.mTimeout ? 1 : 0;
+	mIllegal += referee.mIllegal ? 1 : 0;
+	mPlayed++;
+	if (mPlayed % REPORT_INTERVAL == 0) {
+	    System.out.println(getSummary());
+	}
+	final int verdict = getSprtVerdict();
+	if (mSprtStop && verdict != 0 && !mStopped) {
+	    mStopped = true;
+	    System.out.println("SPRT decided after " + mPlayed + " games");
+	}
+    }
+
+    /**
+     * Mean score of A per game
+     */
+    private double getScore() {
+	return (mResults[WIN] + 0.5 * mResults[DRAW]) / Math.max(1, mPlayed);
+    }
+
+    /**
+     * Variance of the score of one game
+     */
+    private double getVariance(final double score) {
+	final double n = Math.max(1, mPlayed);
+	return (mResults[WIN] * (1 - score) * (1 - score) + mResults[DRAW] * (0.5 - score) * (0.5 - score) + mResults[LOSS] * score * score) / n;
+    }
+
+    public static double toElo(final double score) {
+	final double s = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+	return -400 * Math.log10(1 / s - 1);
+    }
+
+    private static double toScore(final double elo) {
+	return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * Log likelihood ratio of H1 against H0, with the normal approximation of the game scores
+     */
+    public synchronized double getLlr() {
+	final double score = getScore();
+	final double variance = getVariance(score);
+	if (mPlayed < 2 || variance <= 0) {
+	    return 0;
+	}
+	final double s0 = toScore(mElo0), s1 = toScore(mElo1);
+	return (s1 - s0) * (2 * score - s0 - s1) / (2 * variance / mPlayed);
+    }
+
+    /**
+     * Returns 1 when H1 is accepted (A is at least elo1 stronger), -1 for H0, 0 while undecided
+     */
+    public synchronized int getSprtVerdict() {
+	final double llr = getLlr();
+	if (llr >= Math.log((1 - SPRT_BETA) / SPRT_ALPHA)) {
+	    return 1;
+	}
+	if (llr <= Math.log(SPRT_BETA / (1 - SPRT_ALPHA))) {
+	    return -1;
+	}
+	return 0;
+    }
+
+    private String getSummary() {
+	final double minutes = Math.max(1, System.nanoTime() - mStart) / 60e9;
+	return String.format("%d games: +%d =%d -%d, score %.1f%%, %.0f games/min", mPlayed, mResults[WIN], mResults[DRAW], mResults[LOSS], 100 * getScore(),
+		mPlayed / minutes);
+    }
+
+    public synchronized String getReport() {
+	final double score = getScore();
+	final double margin = Z_95 * Math.sqrt(getVariance(score) / Math.max(1, mPlayed));
+	final double elo = toElo(score);
+	final int verdict = getSprtVerdict();
+	final StringBuilder report = new StringBuilder();
+	report.append(getSummary()).append('\n');
+	report.append(String.format("Forfeits: %d on time, %d illegal moves%n", mTimeouts, mIllegal));
+	report.append(String.format("Elo difference: %.1f (95%%: %.1f .. %.1f)%n", elo, toElo(score - margin), toElo(score + margin)));
+	report.append(String.format("SPRT elo0 %.1f elo1 %.1f: LLR %.2f (%.2f, %.2f), ", mElo0, mElo1, getLlr(), Math.log(SPRT_BETA / (1 - SPRT_ALPHA)),
+		Math.log((1 - SPRT_BETA) / SPRT_ALPHA)));
+	report.append(verdict > 0 ? "H1 accepted, A is stronger" : (verdict < 0 ? "H0 accepted, A is not stronger" : "undecided"));
+	return report.toString();
+    }
+
+    /**
+     * Plays one game at a time, owned by one thread
+     */
+    private class Referee {
+	private final Position mPosition = new Position();
+	private final Field mField = new Field();
+	private final BotStarter[] mBots = new BotStarter[3];
+	private final int[] mTimeLeft = new int[3];
+	private final int[] mMoves = new int[Position.NR_CELLS];
+	private final GameRecord mRecord = new GameRecord();
+	boolean mTimeout, mIllegal;
+
+	/**
+	 * Play a game from opening, player1 moves first
+	 *
+	 * @return the winner, or Position.DRAW
+	 */
+	int play(final Position opening, final BotStarter player1, final BotStarter player2) {
+	    mPosition.copyFrom(opening);
+	    mBots[1] = player1;
+	    mBots[2] = player2;
+	    mTimeout = false;
+	    mIllegal = false;
+	    for (int id = 1; id <= 2; id++) {
+		mBots[id].setBotId(id);
+		mBots[id].getTimeManager().setTimebank(mTimebank);
+		mBots[id].getTimeManager().setTimePerMove(mTimePerMove);
+		mTimeLeft[id] = mTimebank;
+	    }
+	    mRecord.clear(0, System.currentTimeMillis());
+	    for (int ply = 0; ply < opening.getPly(); ply++) {
+		mRecord.addMove(opening.getMove(ply));
+	    }
+
+	    final int winner = playMoves();
+	    if (mRecorder != null) {
+		mRecord.setWinner(winner);
+		mRecord.setFlags((mTimeout || mIllegal) ? GameRecord.FORFEIT : 0);
+		try {
+		    mRecorder.write(mRecord);
+		} catch (final IOException e) {
+		    Log.error("Could not write the game record: %s", e);
+		}
+	    }
+	    return winner;
+	}
+
+	/**
+	 * Let the bots move until the game is over or one of them forfeits
+	 */
+	private int playMoves() {
+	    int moveNr = 0;
+	    while (!mPosition.isGameOver()) {
+		final int side = mPosition.getSide();
+		mTimeLeft[side] = Math.min(mTimebank, mTimeLeft[side] + mTimePerMove);
+		mField.setFromPosition(mPosition);
+		mField.setMoveNr(++moveNr);
+		mField.setRoundNr((moveNr + 1) / 2);
+
+		final long start = System.nanoTime();
+		Move move;
+		try {
+		    move = mBots[side].makeTurn(mField, mTimeLeft[side]);
+		} catch (final RuntimeException e) {
+		    Log.error("Bot %d crashed: %s", side, e);
+		    move = null;
+		}
+		final int used = (int) ((System.nanoTime() - start) / 1000000L);
+		mBots[side].reportMove();
+		mTimeLeft[side] -= used;
+		mRecord.addTime(side, used);
+		if (mTimeLeft[side] < 0) {
+		    mTimeout = true;
+		    return 3 - side;
+		}
+		if (move == null || !isLegal(move)) {
+		    Log.warn("Illegal move by bot %d: %s", side, move);
+		    mIllegal = true;
+		    return 3 - side;
+		}
+		mPosition.makeMove(Position.toMove(move.getX(), move.getY()));
+		mRecord.addMove(Position.toMove(move.getX(), move.getY()));
+	    }
+	    return mPosition.getWinner();
+	}
+
+	private boolean isLegal(final Move move) {
+	    if (move.getX() < 0 || move.getX() > 8 || move.getY() < 0 || move.getY() > 8) {
+		return false;
+	    }
+	    final int target = Position.toMove(move.getX(), move.getY());
+	    final int nrMoves = mPosition.generateMoves(mMoves);
+	    for (int i = 0; i < nrMoves; i++) {
+		if (mMoves[i] == target) {
+		    return true;
+		}
+	    }
+	    return false;
+	}
+    }
+}
@@ -0,0 +1,140 @@
+package bot;
+
+import java.util.Arrays;
+
+/**
+ * TranspositionTable class
+ *
+ * Fixed size hash table of search results, two longs per entry in one long[]: the hash xor'ed with the data, and the data. A reader only accepts an entry when both
+ * halves xor back to its hash, so entries torn by a concurrent writer are seen as misses. No locks are needed and any number of searches, on any number of threads,
+ * can share one table.
+ *
+ * Every search takes an age from newSearch, stores its entries with it and gives it back with endSearch. An entry is current while the search that stored it, or
+ * any search that started after it, is running; until then it is only replaced by a result at least as deep. Ages count modulo 256 and are compared by their
+ * distance to the newest one.
+ *
+ * Data layout: score (bits 0-31), move + 1 (32-38, 0 for none), depth (39-46), bound (47-48) and age (49-56). The bound is never 0, so the data of a stored entry is
+ * never 0 either and 0 can mean "miss".
+ *
+ * @author stilkin
+ */
+public class TranspositionTable {
+    public static final long MISS = 0;
+    public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+    public static final int DEFAULT_MB = 32;
+    private static final int BYTES_PER_ENTRY = 16;
+    private static final int AGES = 256;
+
+    private final long[] mTable;
+    private final int mMask;
+    private final int[] mRunning = new int[AGES]; // searches running per age, guarded by mRunning
+    private int mNewest = 0; // guarded by mRunning
+    private volatile int mAgeState = 0; // newest age (bits 0-7) and the number of ages from the oldest running search up to it (8-16), for store
+
+    public TranspositionTable(final int megabytes) {
+	long entries = Long.highestOneBit(Math.max(1L, megabytes * 1024L * 1024L / BYTES_PER_ENTRY));
+	entries = Math.min(entries, 1L << 28);
+	mTable = new long[(int) entries * 2];
+	mMask = (int) entries - 1;
+    }
+
+    /**
+     * Start a new search, that stores its entries with the age returned and calls endSearch with it when it is done. Entries of searches that ended before the oldest
+     * running one started may be replaced by anything.
+     */
+    public int newSearch() {
+	synchronized (mRunning) {
+	    mNewest = (mNewest + 1) & 0xFF;
+	    mRunning[mNewest]++;
+	    updateAgeState();
+	    return mNewest;
+	}
+    }
+
+    public void endSearch(final int age) {
+	synchronized (mRunning) {
+	    mRunning[age]--;
+	    updateAgeState();
+	}
+    }
+
+    private void updateAgeState() {
+	int live = 0;
+	for (int distance = 0; distance < AGES; distance++) {
+	    if (mRunning[(mNewest - distance) & 0xFF] > 0) {
+		live = distance + 1;
+	    }
+	}
+	mAgeState = mNewest | (live << 8);
+    }
+
+    /**
+     * Whether an entry of age may still be needed by a running search
+     */
+    private boolean isCurrent(final int age) {
+	final int state = mAgeState;
+	return ((state - age) & 0xFF) < (state >>> 8);
+    }
+
+    public void clear() {
+	Arrays.fill(mTable, 0);
+    }
+
+    /**
+     * Returns the data stored for hash, or MISS
+     */
+    public long probe(final long hash) {
+	final int index = ((int) hash & mMask) << 1;
+	final long data = mTable[index + 1];
+	if ((mTable[index] ^ data) != hash) {
+	    return MISS;
+	}
+	return data;
+    }
+
+    /**
+     * Store a result. A current entry is only replaced by a search that is at least as deep, or by the same position.
+     *
+     * @param move
+     *            best move, -1 for none
+     * @param age
+     *            of the storing search, from newSearch
+     */
+    public void store(final long hash, final int score, final int move, final int depth, final int bound, final int age) {
+	final int index = ((int) hash & mMask) << 1;
+	final long old = mTable[index + 1];
+	if (old != MISS && getDepth(old) > depth && isCurrent(getAge(old)) && (mTable[index] ^ old) != hash) {
+	    return;
+	}
+	final long data = (score & 0xFFFFFFFFL) | ((long) (move + 1) << 32) | ((long) depth << 39) | ((long) bound << 47) | ((long) age << 49);
+	mTable[index] = hash ^ data;
+	mTable[index + 1] = data;
+    }
+
+    public static int getScore(final long data) {
+	return (int) data;
+    }
+
+    /**
+     * Returns the stored move, -1 for none
+     */
+    public static int getMove(final long data) {
+	return (int) ((data >>> 32) & 0x7F) - 1;
+    }
+
+    public static int getDepth(final long data) {
+	return (int) ((data >>> 39) & 0xFF);
+    }
+
+    public static int getBound(final long data) {
+	return (int) ((data >>> 47) & 0x3);
+    }
+
+    private static int getAge(final long data) {
+	return (int) ((data >>> 49) & 0xFF);
+    }
+
+    public int getSizeMb() {
+	return (int) ((long) mTable.length * 8 / (1024 * 1024));
+    }
+}
@@ -0,0 +1,30 @@
+package bot;
+
+/**
+ * Random keys for hashing a {@link Position}. The keys come from a fixed seed, so a hash is the same in every run (the opening book depends on that).
+ *
+ * @author stilkin
+ */
+public final class Zobrist {
+    /** CELLS[player][move], index 0 is unused */
+    public static final long[][] CELLS = new long[3][Position.NR_CELLS];
+    /** FORCED[board + 1], FORCED[0] is a free choice */
+    public static final long[] FORCED = new long[Position.NR_BOARDS + 1];
+    /** Toggled when player 2 is to move */
+    public static final long SIDE;
+
+    static {
+	final FastRandom random = new FastRandom(0x5EEDC0DEL);
+	for (int player = 1; player <= 2; player++) {
+	    for (int move = 0; move < Position.NR_CELLS; move++) {
+		CELLS[player][move] = random.nextLong();
+	    }
+	}
+	for (int i = 0; i < FORCED.length; i++) {
+	    FORCED[i] = random.nextLong();
+	}
+	SIDE = random.nextLong();
+    }
+
+    private Zobrist() {}
+}